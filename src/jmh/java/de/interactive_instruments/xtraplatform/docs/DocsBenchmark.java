@@ -0,0 +1,172 @@
+package de.interactive_instruments.xtraplatform.docs;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the docs engine on {@link SyntheticLayerDocs}. The lookups are measured in batches
+ * on a shared {@link Docs} instance. Where the engine caches results, the benchmarks use a fresh
+ * layer and instance from {@link ColdDocs} and are measured as single shots, so that a single run
+ * of the markdown, schema or reflection tasks is measured and not a warm cache.
+ *
+ * <p>Run with {@code ./gradlew jmh}, results are written to {@code build/reports/jmh/results.json}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocsBenchmark {
+
+  @Param({"4", "16"})
+  int modules;
+
+  @Param({"16", "64"})
+  int types;
+
+  @Param({"1", "4"})
+  int interfaceDepth;
+
+  @Param({"32", "512"})
+  int docSize;
+
+  private LayerDocs layer;
+  private Gson gson;
+  private List<String> configTypes;
+  private List<String> baseTypes;
+  private String lookupInterface;
+  private Docs docs;
+
+  /**
+   * A fresh layer and {@link Docs} instance for every single shot iteration, so that neither the
+   * caches of the engine nor the memoized doc texts of the layer are warm.
+   */
+  @State(Scope.Thread)
+  public static class ColdDocs {
+    private Docs docs;
+
+    @Setup(Level.Iteration)
+    public void load(DocsBenchmark benchmark) {
+      this.docs =
+          new Docs(
+              List.of(
+                  new SyntheticLayerDocs(
+                          benchmark.modules,
+                          benchmark.types,
+                          benchmark.interfaceDepth,
+                          benchmark.docSize)
+                      .generate()));
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void generate() {
+    this.layer = new SyntheticLayerDocs(modules, types, interfaceDepth, docSize).generate();
+    this.gson = new GsonBuilder().setPrettyPrinting().create();
+    this.configTypes = new ArrayList<>();
+    this.baseTypes = new ArrayList<>();
+    for (int m = 0; m < modules; m++) {
+      for (int t = 0; t < types; t++) {
+        configTypes.add(SyntheticLayerDocs.config(m, t));
+      }
+      for (int d = 0; d < interfaceDepth; d++) {
+        baseTypes.add(SyntheticLayerDocs.pkg(m) + "." + SyntheticLayerDocs.BASE + d);
+      }
+    }
+    this.lookupInterface = SyntheticLayerDocs.pkg(modules / 2) + "." + SyntheticLayerDocs.BASE + 0;
+    this.docs = new Docs(List.of(layer));
+  }
+
+  @Benchmark
+  public Docs index() {
+    return new Docs(List.of(layer));
+  }
+
+  @Benchmark
+  public void findTypeRef(Blackhole blackhole) {
+    for (String type : configTypes) {
+      blackhole.consume(docs.findTypeRef(type));
+    }
+  }
+
+  @Benchmark
+  public void findTypeByInterface(Blackhole blackhole) {
+    for (String type : baseTypes) {
+      blackhole.consume(docs.findTypeByInterface(type));
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 10, batchSize = 1)
+  @Measurement(iterations = 30, batchSize = 1)
+  public void renderMarkdown(ColdDocs cold, Blackhole blackhole) {
+    Docs docs = cold.docs;
+    for (DocFile docFile : docs.getDocFiles()) {
+      for (String language : docFile.docRef.getDocLanguages()) {
+        blackhole.consume(
+            docFile.docRef.getDocText(
+                docFile.docRef, language, docFile.tables, docFile.vars, Optional.empty()));
+      }
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 10, batchSize = 1)
+  @Measurement(iterations = 30, batchSize = 1)
+  public void replaceTags(ColdDocs cold, Blackhole blackhole) {
+    Docs docs = cold.docs;
+    for (String type : configTypes) {
+      DocRef docRef = docs.findTypeRef(type);
+      TagReplacer tagReplacer = new TagReplacer(docRef, "en", Map.of());
+
+      blackhole.consume(tagReplacer.replaceStrings(docRef.getDocText("en")));
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 10, batchSize = 1)
+  @Measurement(iterations = 30, batchSize = 1)
+  public void jsonSchema(ColdDocs cold, Blackhole blackhole) {
+    Docs docs = cold.docs;
+    JsonSchemaGenerator generator = new JsonSchemaGenerator(docs, gson);
+
+    for (int m = 0; m < modules; m++) {
+      DocRef type = docs.findTypeRef(SyntheticLayerDocs.immutable(m, 0));
+
+      blackhole.consume(generator.generate(List.of(type), new LinkedHashMap<>()));
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 10, batchSize = 1)
+  @Measurement(iterations = 30, batchSize = 1)
+  public List<Map<String, Object>> reflectionConfig(ColdDocs cold) {
+    Docs docs = cold.docs;
+    return new ReflectionConfigGenerator(docs, gson)
+        .generate(docs.findTypeByInterface(lookupInterface), List.of("java.lang.String"));
+  }
+}
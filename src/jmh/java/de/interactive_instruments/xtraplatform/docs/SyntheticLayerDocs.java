@@ -0,0 +1,236 @@
+package de.interactive_instruments.xtraplatform.docs;
+
+import de.interactive_instruments.xtraplatform.Maintenance;
+import de.interactive_instruments.xtraplatform.Maturity;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generates layer docs shaped like the output of {@link XtraPlatformDoclet} for benchmarks.
+ *
+ * <p>Every module has a chain of base interfaces with the given depth and the given number of
+ * configuration types, each with an immutable implementation, a {@code DocFile} with a properties
+ * table and properties that reference other configuration types as single values, lists and maps.
+ * Doc comments consist of the given number of words.
+ */
+class SyntheticLayerDocs {
+
+  static final String CONFIG = "Config";
+  static final String IMMUTABLE = "Immutable";
+  static final String BASE = "Base";
+
+  private static final String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+  private static final String DOC_FILE = "de.ii.xtraplatform.docs.DocFile";
+  private static final String DOC_TABLES =
+      "@de.ii.xtraplatform.docs.DocTable(name=\"properties\","
+          + " rows={@de.ii.xtraplatform.docs.DocStep(type=JSON_PROPERTIES)},"
+          + " columnSet=JSON_PROPERTIES),@de.ii.xtraplatform.docs.DocTable(name=\"children\","
+          + " rows={@de.ii.xtraplatform.docs.DocStep(type=TAG_REFS, params={\"{@ref:children}\"})},"
+          + " columns={@de.ii.xtraplatform.docs.DocColumn(value={@de.ii.xtraplatform.docs.DocStep("
+          + "type=TAG, params={\"{@title}\"})}, header={@de.ii.xtraplatform.docs.DocI18n("
+          + "language=\"en\", value=\"Title\")}), @de.ii.xtraplatform.docs.DocColumn(value="
+          + "{@de.ii.xtraplatform.docs.DocStep(type=TAG, params={\"{@body}\"})}, header="
+          + "{@de.ii.xtraplatform.docs.DocI18n(language=\"en\", value=\"Description\")})})";
+  private static final String DOC_VARS =
+      "@de.ii.xtraplatform.docs.DocVar(name=\"children\","
+          + " value={@de.ii.xtraplatform.docs.DocStep(type=TAG_REFS, params={\"{@ref:children}\"}),"
+          + " @de.ii.xtraplatform.docs.DocStep(type=SORTED, params={\"{@title}\"}),"
+          + " @de.ii.xtraplatform.docs.DocStep(type=TAG, params={\"{@title}\"}),"
+          + " @de.ii.xtraplatform.docs.DocStep(type=COLLECT, params={\"SEPARATED:, \"})})";
+  private static final String[] WORDS = {
+    "the", "service", "configuration", "value", "default", "layer", "module", "feature"
+  };
+
+  private final int modules;
+  private final int types;
+  private final int interfaceDepth;
+  private final int docSize;
+
+  SyntheticLayerDocs(int modules, int types, int interfaceDepth, int docSize) {
+    this.modules = modules;
+    this.types = types;
+    this.interfaceDepth = interfaceDepth;
+    this.docSize = docSize;
+  }
+
+  static String pkg(int module) {
+    return "de.ii.bench.m" + module;
+  }
+
+  static String config(int module, int type) {
+    return pkg(module) + "." + CONFIG + type;
+  }
+
+  static String immutable(int module, int type) {
+    return pkg(module) + "." + IMMUTABLE + CONFIG + type;
+  }
+
+  LayerDocs generate() {
+    LayerDocs layer = new LayerDocs();
+    layer.id = "de.ii.bench";
+    layer.name = "xtraplatform-bench";
+    layer.version = "1.0.0";
+    layer.description = "Synthetic layer";
+    layer.modules = new LinkedHashMap<>();
+
+    for (int m = 0; m < modules; m++) {
+      ModuleDocs module = module(m);
+      layer.modules.put(module.id, module);
+    }
+
+    return layer;
+  }
+
+  private ModuleDocs module(int m) {
+    ModuleDocs module = new ModuleDocs();
+    module.id = pkg(m);
+    module.name = "bench-m" + m;
+    module.version = "1.0.0";
+    module.description = "Synthetic module " + m;
+    module.maturity = Maturity.MATURE;
+    module.maintenance = Maintenance.FULL;
+    module.exports = Set.of(pkg(m));
+    module.requires = Set.of();
+    module.api = new LinkedHashMap<>();
+
+    for (int d = 0; d < interfaceDepth; d++) {
+      TypeDocs base = type(pkg(m) + "." + BASE + d, bases(m, d), List.of());
+      base.methods = List.of(property("getBase" + d, "java.lang.String", "base" + d, null));
+      module.api.put(base.qualifiedName, base);
+    }
+    for (int t = 0; t < types; t++) {
+      TypeDocs config = configType(m, t);
+      TypeDocs immutable = immutableType(m, t, config);
+      module.api.put(config.qualifiedName, config);
+      module.api.put(immutable.qualifiedName, immutable);
+    }
+
+    return module;
+  }
+
+  private TypeDocs configType(int m, int t) {
+    String child = config(m, (t + 1) % types);
+    String sibling = config(m, (t + 2) % types);
+
+    TypeDocs config = type(config(m, t), bases(m, interfaceDepth), List.of(docFile()));
+    config.doc =
+        List.of(
+            Map.of(
+                "title", List.of(CONFIG + " " + t),
+                "langEn", List.of(text(t, "{@docTable:properties }", "{@docVar:children }")),
+                "langDe", List.of(text(t, "{@docTable:properties }")),
+                "ref:children", List.of(child + ", " + sibling)));
+    config.methods =
+        List.of(
+            property("getName", "java.lang.String", "name", null),
+            property("getCount", "int", "count", null),
+            property("getEnabled", "java.util.Optional<java.lang.Boolean>", "enabled", null),
+            property("getTags", "java.util.List<java.lang.String>", "tags", null),
+            property("getChild", "java.util.Optional<" + child + ">", "child", null),
+            property("getChildren", "java.util.List<" + sibling + ">", "children", null),
+            property(
+                "getByName", "java.util.Map<java.lang.String," + sibling + ">", "byName", null));
+
+    return config;
+  }
+
+  private TypeDocs immutableType(int m, int t, TypeDocs config) {
+    List<String> interfaces = new ArrayList<>();
+    interfaces.add(config.qualifiedName);
+    interfaces.addAll(bases(m, interfaceDepth));
+
+    TypeDocs immutable = type(immutable(m, t), interfaces, List.of());
+    immutable.methods =
+        config.methods.stream()
+            .map(
+                method ->
+                    property(
+                        method.qualifiedName,
+                        method.returnType,
+                        method.annotations.get(0).attributes.get("value"),
+                        config.qualifiedName))
+            .collect(Collectors.toList());
+
+    return immutable;
+  }
+
+  // all interfaces of the chain below the given depth, nearest first
+  private List<String> bases(int m, int depth) {
+    return IntStream.iterate(depth - 1, d -> d >= 0, d -> d - 1)
+        .mapToObj(d -> pkg(m) + "." + BASE + d)
+        .collect(Collectors.toList());
+  }
+
+  private TypeDocs type(
+      String qualifiedName, List<String> interfaces, List<AnnotationDocs> annotations) {
+    TypeDocs type = new TypeDocs();
+    type.qualifiedName = qualifiedName;
+    type.interfaces =
+        interfaces.stream().map(SyntheticLayerDocs::element).collect(Collectors.toList());
+    type.annotations = annotations;
+    type.types = List.of();
+    type.modifiers = Set.of("public", "abstract");
+    type.doc = List.of();
+    type.methods = List.of();
+    type.fields = List.of();
+
+    return type;
+  }
+
+  // overrides is the declaring interface for implementations, otherwise null
+  private MethodDocs property(String name, String returnType, String jsonName, String overrides) {
+    MethodDocs method = new MethodDocs();
+    method.qualifiedName = name;
+    method.returnType = returnType;
+    method.parameters = List.of();
+    method.types = List.of();
+    method.modifiers = Set.of("public");
+    method.annotations = List.of(annotation(JSON_PROPERTY, Map.of("value", jsonName)));
+    method.doc =
+        Objects.nonNull(overrides)
+            ? List.of(Map.of(DocRef.OVERRIDES_TAG, List.of(overrides)))
+            : List.of(
+                Map.of(
+                    "langEn", List.of(text(name.length(), jsonName)),
+                    "langDe", List.of(text(name.length())),
+                    "default", List.of(jsonName)),
+                Map.of(DocRef.OVERRIDES_TAG, List.of()));
+
+    return method;
+  }
+
+  private AnnotationDocs docFile() {
+    return annotation(
+        DOC_FILE, Map.of("path", "configs", "tables", DOC_TABLES, "vars", DOC_VARS));
+  }
+
+  private String text(int seed, String... tags) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < docSize; i++) {
+      text.append(WORDS[(seed + i) % WORDS.length]).append(i % 12 == 11 ? ".\n\n" : " ");
+    }
+    for (String tag : tags) {
+      text.append("\n\n").append(tag);
+    }
+    return text.toString();
+  }
+
+  private static ElementDocs element(String qualifiedName) {
+    ElementDocs element = new ElementDocs();
+    element.qualifiedName = qualifiedName;
+    return element;
+  }
+
+  private static AnnotationDocs annotation(String qualifiedName, Map<String, String> attributes) {
+    AnnotationDocs annotation = new AnnotationDocs();
+    annotation.qualifiedName = qualifiedName;
+    annotation.attributes = attributes;
+    return annotation;
+  }
+}
@@ -504,19 +504,21 @@ ENV XTRAPLATFORM_ENV CONTAINER
 
         Pattern pattern = stringToRegex(value)
 
-        return project
-                .zipTree(jar)
-                .matching({ it.include('**/META-INF/MANIFEST.MF') })
-                .files
-                .any({ manifest -> pattern.matcher(manifest.text).find() })
+        return JarEntries
+                .readAll(jar, ApplicationPlugin::isManifest, { it.getText('UTF-8') })
+                .any({ manifest -> pattern.matcher(manifest).find() })
     }
 
     Manifest readManifest(Project project, File jar) {
-        File manifest = project
-                .zipTree(jar)
-                .matching({ it.include('**/META-INF/MANIFEST.MF') })
-                .singleFile
-        return new Manifest(new FileInputStream(manifest))
+        List<Manifest> manifests = JarEntries.readAll(jar, ApplicationPlugin::isManifest, { new Manifest(it) })
+        if (manifests.size() != 1) {
+            throw new IllegalStateException("Expected exactly one manifest in " + jar + ", found " + manifests.size())
+        }
+        return manifests.get(0)
+    }
+
+    static boolean isManifest(String entry) {
+        return entry == 'META-INF/MANIFEST.MF' || entry.endsWith('/META-INF/MANIFEST.MF')
     }
 
     Pattern stringToRegex(String value) {
@@ -0,0 +1,82 @@
+package de.interactive_instruments.xtraplatform;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads single entries directly from a jar, without extracting it to a temporary directory like
+ * {@code project.zipTree(jar)} does.
+ */
+public class JarEntries {
+
+  public interface Reader<T> {
+    T read(InputStream in) throws IOException;
+  }
+
+  private JarEntries() {}
+
+  public static boolean exists(File jar, String name) throws IOException {
+    try (ZipFile zipFile = new ZipFile(jar)) {
+      return zipFile.getEntry(name) != null;
+    }
+  }
+
+  /** The returned stream also closes the jar. */
+  public static InputStream open(File jar, String name) throws IOException {
+    ZipFile zipFile = new ZipFile(jar);
+    try {
+      ZipEntry entry = zipFile.getEntry(name);
+      if (entry == null) {
+        throw new FileNotFoundException(String.format("No entry %s in %s", name, jar));
+      }
+
+      return new FilterInputStream(zipFile.getInputStream(entry)) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            zipFile.close();
+          }
+        }
+      };
+    } catch (IOException e) {
+      zipFile.close();
+      throw e;
+    }
+  }
+
+  public static <T> T read(File jar, String name, Reader<T> reader) throws IOException {
+    try (InputStream in = open(jar, name)) {
+      return reader.read(in);
+    }
+  }
+
+  public static <T> List<T> readAll(File jar, Predicate<String> names, Reader<T> reader)
+      throws IOException {
+    List<T> values = new ArrayList<>();
+
+    try (ZipFile zipFile = new ZipFile(jar)) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        if (!entry.isDirectory() && names.test(entry.getName())) {
+          try (InputStream in = zipFile.getInputStream(entry)) {
+            values.add(reader.read(in));
+          }
+        }
+      }
+    }
+
+    return values;
+  }
+}
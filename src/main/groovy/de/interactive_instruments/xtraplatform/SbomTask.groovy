@@ -69,8 +69,7 @@ class SbomTask extends DefaultTask {
 
         getSourceFiles().files.each {
             try {
-                def sbom = project.zipTree(it).matching { include 'sbom.json' }.singleFile
-                Map<String, Object> sb = jsonSlurper.parse(sbom)
+                Map<String, Object> sb = JarEntries.read(it, 'sbom.json', { jsonSlurper.parse(it) })
                 layers.add(sb)
             } catch (Throwable e) {
                 println "NO SBOM for " + it.name
@@ -0,0 +1,417 @@
+package de.interactive_instruments.xtraplatform.docs;
+
+import de.interactive_instruments.xtraplatform.Maintenance;
+import de.interactive_instruments.xtraplatform.Maturity;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Compact binary representation of {@link LayerDocs}.
+ *
+ * <p>Layout: magic, format version, string table, index section, body section. All integers are
+ * unsigned varints, all strings are references into the string table (0 is null). The index
+ * section contains the layer and module attributes and for every type the attributes needed by
+ * the lookup indexes in {@link Docs} (name, super class, interfaces, annotations), followed by the
+ * precomputed {@link LayerDocs.Index}, so that {@link Docs} does not have to rebuild it on load.
+ * Doc comments, methods and fields of a type are stored in the body section and only decoded when
+ * they are accessed for the first time.
+ */
+class BinaryLayerDocs {
+
+  private static final byte[] MAGIC = "XPLD".getBytes(StandardCharsets.US_ASCII);
+  private static final int VERSION = 2;
+
+  private BinaryLayerDocs() {}
+
+  static void write(File f, LayerDocs layer) throws IOException {
+    Encoder encoder = new Encoder();
+    byte[] content = encoder.encode(layer);
+
+    try (OutputStream out =
+        Files.newOutputStream(
+            f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      out.write(content);
+    }
+  }
+
+  static LayerDocs read(ByteBuffer buffer, Interner interner) {
+    return new Decoder(buffer.asReadOnlyBuffer(), interner).decode();
+  }
+
+  private static class Encoder {
+    private final Map<String, Integer> strings = new LinkedHashMap<>();
+
+    byte[] encode(LayerDocs layer) throws IOException {
+      Output body = new Output();
+      Output index = new Output();
+
+      ref(index, layer.id);
+      ref(index, layer.name);
+      ref(index, layer.version);
+      ref(index, layer.description);
+      map(
+          index,
+          layer.modules,
+          (out, module) -> {
+            ref(out, module.id);
+            ref(out, module.name);
+            ref(out, module.version);
+            ref(out, module.description);
+            ref(out, module.descriptionDe);
+            ref(out, Objects.nonNull(module.maturity) ? module.maturity.name() : null);
+            ref(out, Objects.nonNull(module.maintenance) ? module.maintenance.name() : null);
+            out.bool(module.deprecated);
+            out.bool(module.docIgnore);
+            strings(out, module.exports);
+            strings(out, module.requires);
+            map(
+                out,
+                module.api,
+                (out2, type) -> {
+                  ref(out2, type.qualifiedName);
+                  nullable(out2, type.superClass, this::element);
+                  list(out2, type.interfaces, this::element);
+                  list(out2, type.annotations, this::annotation);
+                  strings(out2, type.types);
+                  strings(out2, type.modifiers);
+                  out2.varint(body.size());
+
+                  doc(body, type.doc);
+                  list(body, type.methods, this::method);
+                  list(body, type.fields, this::variable);
+                });
+          });
+      LayerDocs.Index lookup = LayerDocs.Index.of(layer);
+      map(index, lookup.interfaces, this::ordinals);
+      map(index, lookup.superClasses, this::ordinals);
+      map(index, lookup.annotations, this::ordinals);
+
+      Output file = new Output();
+      file.writeBytes(MAGIC);
+      file.varint(VERSION);
+      file.varint(strings.size());
+      for (String string : strings.keySet()) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        file.varint(bytes.length);
+        file.writeBytes(bytes);
+      }
+      file.varint(index.size());
+      index.writeTo(file);
+      body.writeTo(file);
+
+      return file.toByteArray();
+    }
+
+    private void ref(Output out, String string) {
+      if (Objects.isNull(string)) {
+        out.varint(0);
+        return;
+      }
+      out.varint(strings.computeIfAbsent(string, ignore -> strings.size()) + 1);
+    }
+
+    private void ordinals(Output out, List<Integer> ordinals) {
+      list(out, ordinals, Output::varint);
+    }
+
+    private void strings(Output out, Collection<String> values) {
+      list(out, values, this::ref);
+    }
+
+    private <T> void nullable(Output out, T value, BiConsumer<Output, T> writer) {
+      out.bool(Objects.nonNull(value));
+      if (Objects.nonNull(value)) {
+        writer.accept(out, value);
+      }
+    }
+
+    private <T> void list(Output out, Collection<T> values, BiConsumer<Output, T> writer) {
+      if (Objects.isNull(values)) {
+        out.varint(0);
+        return;
+      }
+      out.varint(values.size() + 1);
+      values.forEach(value -> writer.accept(out, value));
+    }
+
+    private <T> void map(Output out, Map<String, T> values, BiConsumer<Output, T> writer) {
+      list(
+          out,
+          Objects.nonNull(values) ? values.entrySet() : null,
+          (out2, entry) -> {
+            ref(out2, entry.getKey());
+            writer.accept(out2, entry.getValue());
+          });
+    }
+
+    private void doc(Output out, List<Map<String, List<String>>> doc) {
+      list(out, doc, (out2, tags) -> map(out2, tags, this::strings));
+    }
+
+    private void element(Output out, ElementDocs element) {
+      ref(out, element.qualifiedName);
+      doc(out, element.doc);
+      list(out, element.annotations, this::annotation);
+      strings(out, element.types);
+      strings(out, element.modifiers);
+    }
+
+    private void annotation(Output out, AnnotationDocs annotation) {
+      element(out, annotation);
+      map(out, annotation.attributes, this::ref);
+    }
+
+    private void variable(Output out, VariableDocs variable) {
+      element(out, variable);
+      ref(out, variable.type);
+    }
+
+    private void method(Output out, MethodDocs method) {
+      element(out, method);
+      list(out, method.parameters, this::variable);
+      out.bool(method.isConstructor);
+      ref(out, method.returnType);
+    }
+  }
+
+  private static class Output extends ByteArrayOutputStream {
+
+    void varint(int value) {
+      while ((value & ~0x7F) != 0) {
+        write((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      write(value);
+    }
+
+    void bool(boolean value) {
+      write(value ? 1 : 0);
+    }
+  }
+
+  private static class Decoder {
+    private final ByteBuffer buffer;
+    private final Interner interner;
+    private final int[] stringOffsets;
+    private final String[] strings;
+    private final int indexOffset;
+    private final int bodyOffset;
+
+    Decoder(ByteBuffer buffer, Interner interner) {
+      this.buffer = buffer;
+      this.interner = interner;
+
+      Input in = new Input(buffer, buffer.position());
+      byte[] magic = in.bytes(MAGIC.length);
+      if (!Arrays.equals(magic, MAGIC)) {
+        throw new IllegalArgumentException("Not a binary layer docs file");
+      }
+      int version = in.varint();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Unsupported binary layer docs version: " + version);
+      }
+
+      int count = in.varint();
+      this.stringOffsets = new int[count];
+      this.strings = new String[count];
+      for (int i = 0; i < count; i++) {
+        stringOffsets[i] = in.position;
+        int length = in.varint();
+        in.position += length;
+      }
+      int indexSize = in.varint();
+      this.indexOffset = in.position;
+      this.bodyOffset = in.position + indexSize;
+    }
+
+    LayerDocs decode() {
+      Input in = new Input(buffer, indexOffset);
+      LayerDocs layer = new LayerDocs();
+
+      layer.id = string(in);
+      layer.name = string(in);
+      layer.version = string(in);
+      layer.description = string(in);
+      layer.modules =
+          map(
+              in,
+              in2 -> {
+                ModuleDocs module = new ModuleDocs();
+                module.id = string(in2);
+                module.name = string(in2);
+                module.version = string(in2);
+                module.description = string(in2);
+                module.descriptionDe = string(in2);
+                String maturity = string(in2);
+                module.maturity = Objects.nonNull(maturity) ? Maturity.valueOf(maturity) : null;
+                String maintenance = string(in2);
+                module.maintenance =
+                    Objects.nonNull(maintenance) ? Maintenance.valueOf(maintenance) : null;
+                module.deprecated = in2.bool();
+                module.docIgnore = in2.bool();
+                module.exports = set(in2);
+                module.requires = set(in2);
+                module.api = map(in2, this::type);
+                return module;
+              });
+      layer.setIndex(
+          new LayerDocs.Index(
+              map(in, this::ordinals), map(in, this::ordinals), map(in, this::ordinals)));
+
+      return layer;
+    }
+
+    private TypeDocs type(Input in) {
+      TypeDocs type = new TypeDocs();
+      type.qualifiedName = string(in);
+      type.superClass = in.bool() ? element(in, new ElementDocs()) : null;
+      type.interfaces = list(in, in2 -> element(in2, new ElementDocs()));
+      type.annotations = list(in, this::annotation);
+      type.types = list(in, this::string);
+      type.modifiers = set(in);
+
+      int offset = bodyOffset + in.varint();
+      type.loadLazily(
+          lazy -> {
+            Input body = new Input(buffer, offset);
+            lazy.doc = doc(body);
+            lazy.methods = list(body, this::method);
+            lazy.fields = list(body, this::variable);
+          });
+
+      return type;
+    }
+
+    private <T extends ElementDocs> T element(Input in, T element) {
+      element.qualifiedName = string(in);
+      element.doc = doc(in);
+      element.annotations = list(in, this::annotation);
+      element.types = list(in, this::string);
+      element.modifiers = set(in);
+      return element;
+    }
+
+    private AnnotationDocs annotation(Input in) {
+      AnnotationDocs annotation = element(in, new AnnotationDocs());
+      annotation.attributes = map(in, this::string);
+      return annotation;
+    }
+
+    private VariableDocs variable(Input in) {
+      VariableDocs variable = element(in, new VariableDocs());
+      variable.type = string(in);
+      return variable;
+    }
+
+    private MethodDocs method(Input in) {
+      MethodDocs method = element(in, new MethodDocs());
+      method.parameters = list(in, this::variable);
+      method.isConstructor = in.bool();
+      method.returnType = string(in);
+      return method;
+    }
+
+    private List<Integer> ordinals(Input in) {
+      return list(in, Input::varint);
+    }
+
+    private List<Map<String, List<String>>> doc(Input in) {
+      return list(in, in2 -> map(in2, in3 -> list(in3, this::string)));
+    }
+
+    private String string(Input in) {
+      int ref = in.varint();
+      if (ref == 0) {
+        return null;
+      }
+      String string = strings[ref - 1];
+      if (Objects.isNull(string)) {
+        Input at = new Input(buffer, stringOffsets[ref - 1]);
+        string = interner.intern(new String(at.bytes(at.varint()), StandardCharsets.UTF_8));
+        strings[ref - 1] = string;
+      }
+      return string;
+    }
+
+    private <T> List<T> list(Input in, Function<Input, T> reader) {
+      int size = in.varint() - 1;
+      if (size < 0) {
+        return null;
+      }
+      List<T> values = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        values.add(reader.apply(in));
+      }
+      return values;
+    }
+
+    private Set<String> set(Input in) {
+      List<String> values = list(in, this::string);
+      return Objects.nonNull(values) ? interner.intern(new LinkedHashSet<>(values)) : null;
+    }
+
+    private <T> Map<String, T> map(Input in, Function<Input, T> reader) {
+      int size = in.varint() - 1;
+      if (size < 0) {
+        return null;
+      }
+      Map<String, T> values = new LinkedHashMap<>();
+      for (int i = 0; i < size; i++) {
+        String key = string(in);
+        values.put(key, reader.apply(in));
+      }
+      return values;
+    }
+  }
+
+  // reads with absolute positions, so lazy decoding can happen concurrently on the shared buffer
+  private static class Input {
+    private final ByteBuffer buffer;
+    private int position;
+
+    Input(ByteBuffer buffer, int position) {
+      this.buffer = buffer;
+      this.position = position;
+    }
+
+    int varint() {
+      int value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buffer.get(position++);
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    boolean bool() {
+      return buffer.get(position++) != 0;
+    }
+
+    byte[] bytes(int length) {
+      byte[] bytes = new byte[length];
+      buffer.get(position, bytes);
+      position += length;
+      return bytes;
+    }
+  }
+}
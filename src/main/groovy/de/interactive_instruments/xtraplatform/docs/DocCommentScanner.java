@@ -1,37 +1,41 @@
 package de.interactive_instruments.xtraplatform.docs;
 
 import com.sun.source.doctree.*;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.util.DocTrees;
 import com.sun.source.util.SimpleDocTreeVisitor;
+import com.sun.source.util.TreePath;
 
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /** A visitor to gather the block tags found in a comment. */
 class DocCommentScanner extends SimpleDocTreeVisitor<Void, Void> {
 
-  private final Elements elementUtils;
+  private final References references;
   private final String enclosingElement;
-  private final List<ElementDocs> types;
   private final List<Map<String, List<String>>> tags;
+  private final StringBuilder buffer;
   private Map<String, List<String>> currentTags;
 
   DocCommentScanner(
-      Elements elementUtils,
-      String enclosingElement,
-      List<ElementDocs> types,
-      List<Map<String, List<String>>> tags) {
-    this.elementUtils = elementUtils;
+      References references, String enclosingElement, List<Map<String, List<String>>> tags) {
+    this.references = references;
     this.enclosingElement = enclosingElement;
-    this.types = types;
     this.tags = tags;
+    this.buffer = new StringBuilder();
     this.currentTags = new LinkedHashMap<>();
     tags.add(currentTags);
   }
@@ -56,60 +60,139 @@ class DocCommentScanner extends SimpleDocTreeVisitor<Void, Void> {
   }
 
   private String parseContent(List<? extends DocTree> docTrees) {
-    final boolean[] inCode = {false};
+    boolean inCode = false;
+    buffer.setLength(0);
 
-    return docTrees.stream()
-        .flatMap(
-            docTree -> {
-              if (docTree instanceof StartElementTree
-                  || docTree instanceof EndElementTree
-                  || docTree instanceof ErroneousTree) {
-                if (docTree instanceof StartElementTree
-                    && !((StartElementTree) docTree).getAttributes().isEmpty()) {
-                  return Stream.of(docTree.toString().replaceAll("(?<!=)\"", "\" "));
-                }
-                return Stream.of(docTree.toString())
-                    // .map(line -> line.startsWith(" ") ? line.substring(1) : line)
-                    .map(
-                        line -> {
-                          switch (line) {
-                            case ">":
-                              return line + " ";
-                            case "<p>":
-                            case "<p/>":
-                            case "<br>":
-                            case "<br/>":
-                              return "\n\n";
-                            case "</p>":
-                              return "";
-                            case "<code>":
-                              inCode[0] = true;
-                              return "";
-                            case "</code>":
-                              inCode[0] = false;
-                              return "";
-                            default:
-                          }
-                          return line;
-                        });
-              }
-              if (docTree instanceof LinkTree) {
-                return Stream.of(resolveReference(((LinkTree) docTree).getReference()));
-              }
-
-              long last = docTree.toString().lines().count() - 1;
-              final int[] i = {0};
-
-              return docTree
-                  .toString()
-                  .lines()
-                  .map(line -> line.replaceAll(":::", "\n:::"))
-                  .map(line -> line.replaceAll("(::: \\w+)(?::(\\w+))?", "$1 $2\n"))
-                  .map(line -> line.replaceAll("(```\\w*)", "\n$1\n"))
-                  .map(line -> inCode[0] && line.startsWith(" ") ? line.substring(1) : line)
-                  .map(line -> inCode[0] && i[0]++ < last ? line + "\n" : line);
-            })
-        .collect(Collectors.joining());
+    for (DocTree docTree : docTrees) {
+      if (docTree instanceof StartElementTree
+          || docTree instanceof EndElementTree
+          || docTree instanceof ErroneousTree) {
+        String element = docTree.toString();
+
+        if (docTree instanceof StartElementTree
+            && !((StartElementTree) docTree).getAttributes().isEmpty()) {
+          appendAttributes(element);
+          continue;
+        }
+        switch (element) {
+          case ">":
+            buffer.append("> ");
+            break;
+          case "<p>":
+          case "<p/>":
+          case "<br>":
+          case "<br/>":
+            buffer.append("\n\n");
+            break;
+          case "</p>":
+            break;
+          case "<code>":
+            inCode = true;
+            break;
+          case "</code>":
+            inCode = false;
+            break;
+          default:
+            buffer.append(element);
+        }
+      } else if (docTree instanceof LinkTree) {
+        buffer.append(resolveReference(((LinkTree) docTree).getReference()));
+      } else {
+        appendLines(docTree.toString(), inCode);
+      }
+    }
+
+    return buffer.toString();
+  }
+
+  // a space after every quote that does not start an attribute value
+  private void appendAttributes(String element) {
+    for (int i = 0; i < element.length(); i++) {
+      char c = element.charAt(i);
+      buffer.append(c);
+      if (c == '"' && (i == 0 || element.charAt(i - 1) != '=')) {
+        buffer.append(' ');
+      }
+    }
+  }
+
+  /**
+   * Appends the lines of the given text without line breaks. Admonitions ({@code ::: type} or
+   * {@code ::: type:title}) and code fences are moved to separate lines. In code, the line breaks
+   * are kept and one leading space is removed from every line.
+   */
+  private void appendLines(String text, boolean inCode) {
+    int length = text.length();
+    int start = 0;
+
+    while (start < length) {
+      int end = start;
+      while (end < length && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+        end++;
+      }
+      int next = end;
+      if (next < length) {
+        boolean crlf =
+            text.charAt(next) == '\r' && next + 1 < length && text.charAt(next + 1) == '\n';
+        next += crlf ? 2 : 1;
+      }
+
+      appendLine(text, inCode && text.charAt(start) == ' ' ? start + 1 : start, end);
+      if (inCode && next < length) {
+        buffer.append('\n');
+      }
+
+      start = next;
+    }
+  }
+
+  private void appendLine(String text, int start, int end) {
+    int admonitionEnd = start;
+    int i = start;
+
+    while (i < end) {
+      if (i >= admonitionEnd && text.startsWith(":::", i) && i + 3 <= end) {
+        buffer.append('\n');
+        admonitionEnd = i + 3;
+      }
+      if (text.startsWith("::: ", i) && i + 4 <= end) {
+        int type = wordEnd(text, i + 4, end);
+        if (type > i + 4) {
+          int title = type < end && text.charAt(type) == ':' ? wordEnd(text, type + 1, end) : type;
+          buffer.append(text, i, type).append(' ');
+          if (title > type + 1) {
+            buffer.append(text, type + 1, title);
+          } else {
+            title = type;
+          }
+          buffer.append('\n');
+          i = title;
+          continue;
+        }
+      }
+      if (text.startsWith("```", i) && i + 3 <= end) {
+        int fenceEnd = wordEnd(text, i + 3, end);
+        buffer.append('\n').append(text, i, fenceEnd).append('\n');
+        i = fenceEnd;
+        continue;
+      }
+
+      buffer.append(text.charAt(i));
+      i++;
+    }
+  }
+
+  private static int wordEnd(String text, int start, int end) {
+    int i = start;
+    while (i < end && isWordChar(text.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  // same as \w in a regex
+  private static boolean isWordChar(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
   }
 
   @Override
@@ -176,49 +259,268 @@ class DocCommentScanner extends SimpleDocTreeVisitor<Void, Void> {
     currentTags.computeIfAbsent(name, n -> new ArrayList<>()).add(content);
   }
 
-  // TODO: <a href
+  // resolved after the scan, when all types are known
   private String resolveReference(ReferenceTree referenceTree) {
-    String refName = null;
-    String ref = referenceTree.getSignature();
-    TypeElement refElement = elementUtils.getTypeElement(ref);
-    // TODO: types is incomplete here, maybe try to resolve see tags later when types is complete
-    if (Objects.isNull(refElement)) {
-      refName =
-          types.stream()
-              .filter(
-                  elementDocs ->
-                      ref.contains(".")
-                          ? Objects.equals(elementDocs.qualifiedName, ref)
-                          : Objects.equals(elementDocs.getName(), ref))
-              .map(elementDocs -> elementDocs.qualifiedName)
-              .findFirst()
-              .or(
-                  () -> {
-                    if (!ref.contains(".")) {
-                      return Optional.ofNullable(
-                              elementUtils.getTypeElement(
-                                  enclosingElement.substring(0, enclosingElement.lastIndexOf('.'))
-                                      + "."
-                                      + ref))
-                          .map(typeElement -> typeElement.getQualifiedName().toString());
-                    }
-                    return Optional.empty();
-                  })
-              .orElse(null);
-
-    } else {
-      refName = refElement.getQualifiedName().toString();
-    }
-    if (Objects.isNull(refName)) {
-      // types.forEach(elementDocs -> System.out.println(elementDocs.qualifiedName));
-      throw new IllegalArgumentException(
-          "Could not resolve '@see "
-              + ref
-              + "' in '"
-              + enclosingElement
-              + "'. Try to use a fully qualified name.");
-    }
-
-    return refName;
+    return references.add(referenceTree.getSignature(), enclosingElement);
+  }
+
+  /**
+   * The references found in doc comments. They are recorded as placeholders during the scan and
+   * replaced in a single pass when all types were scanned, see {@link #resolve(List)}.
+   *
+   * <p>A reference is resolved from the scanned types, the imports of the compilation unit it is
+   * found in and finally from all known types. If the scanned types are only a part of the module,
+   * references that are not resolved from the scanned types themselves are left as symbolic
+   * references and resolved when the module is merged, see {@link #resolveModule(List)}.
+   */
+  static class References {
+    private static final char MARKER = '\u0000';
+    private static final char SEPARATOR = '\u0001';
+
+    private final Elements elementUtils;
+    private final DocTrees treeUtils;
+    private final boolean partial;
+    private final List<Map.Entry<String, String>> refs;
+    private final List<String> unresolved;
+
+    References(Elements elementUtils, DocTrees treeUtils, boolean partial) {
+      this.elementUtils = elementUtils;
+      this.treeUtils = treeUtils;
+      this.partial = partial;
+      this.refs = new ArrayList<>();
+      this.unresolved = new ArrayList<>();
+    }
+
+    private String add(String ref, String enclosingElement) {
+      refs.add(Map.entry(ref, enclosingElement));
+
+      return MARKER + String.valueOf(refs.size() - 1) + MARKER;
+    }
+
+    /** The symbolic references that can only be resolved from the other types of the module. */
+    List<String> getUnresolved() {
+      return unresolved;
+    }
+
+    void resolve(List<ElementDocs> types) {
+      Set<String> qualifiedNames = new HashSet<>();
+      Map<String, String> names = new HashMap<>();
+
+      for (ElementDocs type : types) {
+        qualifiedNames.add(type.qualifiedName);
+        names.putIfAbsent(type.getName(), type.qualifiedName);
+      }
+
+      List<String> resolved =
+          refs.stream()
+              .map(ref -> resolve(ref.getKey(), ref.getValue(), qualifiedNames, names))
+              .collect(Collectors.toList());
+
+      replace(types, marker -> resolved.get(Integer.parseInt(marker)));
+    }
+
+    /**
+     * Resolves the symbolic references left by a partial scan, with all types of the module and
+     * with the same precedence as {@link #resolve(List)}. The recorded resolution from the imports
+     * and the known types of the compilation is used if no type of the module matches.
+     */
+    static void resolveModule(List<ElementDocs> types) {
+      Set<String> qualifiedNames = new HashSet<>();
+      Map<String, String> names = new HashMap<>();
+
+      for (ElementDocs type : types) {
+        qualifiedNames.add(type.qualifiedName);
+        names.putIfAbsent(type.getName(), type.qualifiedName);
+      }
+
+      replace(
+          types,
+          marker -> {
+            String[] parts = marker.split(String.valueOf(SEPARATOR), -1);
+            String ref = parts[0];
+            String enclosingElement = parts[1];
+
+            return resolveScanned(ref, enclosingElement, qualifiedNames)
+                .or(() -> resolveNamed(ref, names))
+                .or(() -> parts[2].isEmpty() ? Optional.empty() : Optional.of(parts[2]))
+                .orElseThrow(
+                    () -> new IllegalArgumentException(unresolvable(ref, enclosingElement)));
+          });
+    }
+
+    private String resolve(
+        String ref,
+        String enclosingElement,
+        Set<String> qualifiedNames,
+        Map<String, String> names) {
+      Optional<String> scanned = resolveScanned(ref, enclosingElement, qualifiedNames);
+      if (scanned.isPresent()) {
+        return scanned.get();
+      }
+
+      if (partial) {
+        // the other types of the module are only known when it is merged
+        Optional<String> known = resolveKnown(ref, enclosingElement);
+        if (known.isEmpty()) {
+          unresolved.add(
+              "'@see "
+                  + ref
+                  + "' in '"
+                  + enclosingElement
+                  + "' is neither imported nor known, it has to be a type of the module.");
+        }
+
+        return MARKER
+            + ref
+            + SEPARATOR
+            + enclosingElement
+            + SEPARATOR
+            + known.orElse("")
+            + MARKER;
+      }
+
+      return resolveNamed(ref, names)
+          .or(() -> resolveKnown(ref, enclosingElement))
+          .orElseThrow(() -> new IllegalArgumentException(unresolvable(ref, enclosingElement)));
+    }
+
+    private static Optional<String> resolveScanned(
+        String ref, String enclosingElement, Set<String> qualifiedNames) {
+      String sibling = getSibling(ref, enclosingElement);
+
+      if (ref.contains(".") && qualifiedNames.contains(ref)) {
+        return Optional.of(ref);
+      }
+      if (!ref.contains(".") && qualifiedNames.contains(sibling)) {
+        return Optional.of(sibling);
+      }
+
+      return Optional.empty();
+    }
+
+    private static Optional<String> resolveNamed(String ref, Map<String, String> names) {
+      if (!ref.contains(".") && names.containsKey(ref)) {
+        return Optional.of(names.get(ref));
+      }
+
+      return Optional.empty();
+    }
+
+    private Optional<String> resolveKnown(String ref, String enclosingElement) {
+      Optional<String> imported = resolveImported(ref, enclosingElement);
+      if (imported.isPresent()) {
+        return imported;
+      }
+
+      // not scanned, e.g. from another module
+      return Optional.ofNullable(elementUtils.getTypeElement(ref))
+          .or(
+              () ->
+                  ref.contains(".")
+                      ? Optional.empty()
+                      : Optional.ofNullable(
+                          elementUtils.getTypeElement(getSibling(ref, enclosingElement))))
+          .map(refElement -> refElement.getQualifiedName().toString());
+    }
+
+    private static String getSibling(String ref, String enclosingElement) {
+      return enclosingElement.substring(0, enclosingElement.lastIndexOf('.')) + "." + ref;
+    }
+
+    private static String unresolvable(String ref, String enclosingElement) {
+      return "Could not resolve '@see "
+          + ref
+          + "' in '"
+          + enclosingElement
+          + "'. Try to use a fully qualified name.";
+    }
+
+    // single type imports first, then on demand imports, like javac
+    private Optional<String> resolveImported(String ref, String enclosingElement) {
+      int member = enclosingElement.indexOf("::");
+      TypeElement enclosingType =
+          elementUtils.getTypeElement(
+              member >= 0 ? enclosingElement.substring(0, member) : enclosingElement);
+      TreePath path = Objects.nonNull(enclosingType) ? treeUtils.getPath(enclosingType) : null;
+
+      if (Objects.isNull(path)) {
+        return Optional.empty();
+      }
+
+      int dot = ref.indexOf('.');
+      String first = dot >= 0 ? ref.substring(0, dot) : ref;
+      String rest = dot >= 0 ? ref.substring(dot) : "";
+      List<String> candidates = new ArrayList<>();
+      List<String> onDemand = new ArrayList<>();
+
+      for (ImportTree importTree : path.getCompilationUnit().getImports()) {
+        if (importTree.isStatic()) {
+          continue;
+        }
+        String name = importTree.getQualifiedIdentifier().toString();
+
+        if (name.endsWith(".*")) {
+          onDemand.add(name.substring(0, name.length() - 1) + ref);
+        } else if (name.endsWith("." + first)) {
+          candidates.add(name + rest);
+        }
+      }
+      candidates.addAll(onDemand);
+
+      return candidates.stream()
+          .map(elementUtils::getTypeElement)
+          .filter(Objects::nonNull)
+          .map(typeElement -> typeElement.getQualifiedName().toString())
+          .findFirst();
+    }
+
+    private static void replace(List<ElementDocs> types, Function<String, String> resolver) {
+      for (ElementDocs type : types) {
+        replace(type, resolver);
+
+        if (type instanceof TypeDocs) {
+          Stream.of(((TypeDocs) type).methods, ((TypeDocs) type).fields)
+              .filter(Objects::nonNull)
+              .flatMap(List::stream)
+              .forEach(element -> replace(element, resolver));
+          Stream.ofNullable(((TypeDocs) type).methods)
+              .flatMap(List::stream)
+              .map(method -> method.parameters)
+              .filter(Objects::nonNull)
+              .flatMap(List::stream)
+              .forEach(parameter -> replace(parameter, resolver));
+        }
+      }
+    }
+
+    private static void replace(ElementDocs element, Function<String, String> resolver) {
+      if (Objects.isNull(element.doc)) {
+        return;
+      }
+      for (Map<String, List<String>> tags : element.doc) {
+        for (List<String> values : tags.values()) {
+          for (int i = 0; i < values.size(); i++) {
+            if (values.get(i).indexOf(MARKER) >= 0) {
+              values.set(i, replace(values.get(i), resolver));
+            }
+          }
+        }
+      }
+    }
+
+    private static String replace(String text, Function<String, String> resolver) {
+      StringBuilder replaced = new StringBuilder(text.length());
+      int from = 0;
+      int start;
+
+      while ((start = text.indexOf(MARKER, from)) >= 0) {
+        int end = text.indexOf(MARKER, start + 1);
+        replaced.append(text, from, start);
+        replaced.append(resolver.apply(text.substring(start + 1, end)));
+        from = end + 1;
+      }
+
+      return replaced.append(text, from, text.length()).toString();
+    }
   }
 }
@@ -1,9 +1,6 @@
 package de.interactive_instruments.xtraplatform.docs
 
-import com.google.gson.Gson
 import de.interactive_instruments.xtraplatform.ApplicationPlugin
-import de.interactive_instruments.xtraplatform.Maintenance
-import de.interactive_instruments.xtraplatform.Maturity
 import org.gradle.api.Plugin
 import org.gradle.api.Project
 import org.gradle.api.tasks.javadoc.Javadoc
@@ -20,6 +17,7 @@ class DocPlugin implements Plugin<Project> {
         def docsTask = project.task("layerDocs", type: LayerDocsTask) {
             group = 'Documentation'
             description = 'Generates layer docs'
+            binary project.findProperty('layerDocsBinary') == 'true'
             onlyIf { System.getProperty("taskIsRun") != "true" }
         }
 
@@ -29,11 +27,44 @@ class DocPlugin implements Plugin<Project> {
             dependsOn docsTask
         }
 
+        // one task for the whole layer that runs the doclet in gradle workers or merges the output of the processor
+        def useProcessor = project.findProperty('moduleDocsProcessor') == 'true'
+        def workersTask = useProcessor || project.findProperty('moduleDocsWorkers') == 'true'
+                ? project.tasks.register("moduleDocs", ModuleDocsTask) {
+                    onlyIf { System.getProperty("taskIsRun") != "true" }
+                    group = 'Documentation'
+                    description = 'Generates module docs'
+                    processor useProcessor
+                }
+                : null
+
+        if (workersTask != null) {
+            docsTask.sources project.files(workersTask)
+            docsTask.dependsOn workersTask
+        }
+
         project.subprojects { Project subProject ->
             if (subProject.name.endsWith("-tpl")) {
                 return
             }
 
+            if (useProcessor) {
+                subProject.plugins.withId('java') {
+                    subProject.dependencies.add('annotationProcessor', [group: 'de.interactive_instruments', name: 'xtraplatform-build', version: ApplicationPlugin.getVersion(project)], {
+                        capabilities {
+                            requireCapability("de.interactive_instruments:xtraplatform-build-annotations")
+                        }
+                    })
+                }
+            }
+
+            if (workersTask != null) {
+                workersTask.configure {
+                    module(subProject)
+                }
+                return
+            }
+
             def modTask = subProject.tasks.register("moduleDocs", Javadoc) {
                 onlyIf { System.getProperty("taskIsRun") != "true" }
                 dependsOn subProject.tasks.named('compileJava')
@@ -46,7 +77,7 @@ class DocPlugin implements Plugin<Project> {
                 exclude { it.name == 'module-info.java' }
 
                 modularity.inferModulePath = false
-                destinationDir = new File(subProject.buildDir, 'tmp/module-docs')
+                destinationDir = ModuleDocsTask.getDestinationDir(subProject)
                 options.with {
                     doclet = XtraPlatformDoclet.class.name
                     docletpath = project.buildscript.configurations.classpath.incoming.files as List
@@ -54,20 +85,7 @@ class DocPlugin implements Plugin<Project> {
                     //outputLevel = JavadocOutputLevel.VERBOSE
                 }
                 doFirst {
-                    ModuleDocs docs = new ModuleDocs(
-                            id: subProject.moduleInfo.name.toString(),
-                            name: subProject.name.toString(),
-                            version: subProject.version.toString(),
-                            description: Objects.requireNonNullElse(subProject.description, '').toString(),
-                            descriptionDe: subProject.descriptionDe,
-                            maturity: subProject.maturity as Maturity,
-                            maintenance: subProject.hasProperty("maintenance") ? subProject.maintenance as Maintenance : Maintenance.NONE,
-                            deprecated: subProject.deprecated,
-                            docIgnore: subProject.docIgnore,
-                            exports: subProject.moduleInfo.exports.collect { it.toString() },
-                            requires: subProject.moduleInfo.requires.collect { it.toString() },
-                    )
-                    options.addStringOption('modinfo', new Gson().toJson(docs))
+                    options.addStringOption('modinfo', ModuleDocsTask.getModuleInfo(subProject))
                 }
 
                 docsTask.sources outputs.files
@@ -1,5 +1,9 @@
 package de.interactive_instruments.xtraplatform.docs;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.Map.Entry;
@@ -13,6 +17,10 @@ class DocRef {
   static final String BODY = "body";
   static final String OVERRIDES_TAG = "_overrides_";
 
+  // bump when the rendering changes, invalidates all fingerprints
+  private static final int FINGERPRINT_VERSION = 2;
+  private static final Gson GSON = new Gson();
+
   private final Docs docs;
   private final LayerDocs layer;
   private final ModuleDocs module;
@@ -23,7 +31,7 @@ class DocRef {
   private final Map<String, String> additionalVars;
 
   DocRef(Docs docs, LayerDocs layer, ModuleDocs module, TypeDocs type) {
-    this(docs, layer, module, type, null, null, Map.of(), new HashMap<>());
+    this(docs, layer, module, type, null, null, Map.of(), Map.of());
   }
 
   DocRef(DocRef orig, String alias, Map<String, String> aliasDescription) {
@@ -98,10 +106,10 @@ class DocRef {
   }
 
   Stream<DocRef> getMethods() {
-    if (isMethod() || Objects.isNull(getType().methods)) {
+    if (isMethod() || Objects.isNull(getType().getMethods())) {
       return Stream.empty();
     }
-    return getType().methods.stream().map(methodDocs -> new DocRef(this, methodDocs));
+    return getType().getMethods().stream().map(methodDocs -> new DocRef(this, methodDocs));
   }
 
   Stream<AnnotationDocs> getAnnotations() {
@@ -156,19 +164,14 @@ class DocRef {
     if (!isMethod()) {
       return Stream.empty();
     }
-    return getDocTag(method, OVERRIDES_TAG)
-        .map(docs::findType)
-        .map(typeDocs -> typeDocs.findOverride(method))
-        .filter(Optional::isPresent)
-        .map(Optional::get);
+    return docs.findOverrides(method);
   }
 
   Stream<TypeDocs> getOverridesTypes() {
     if (!isMethod()) {
       return Stream.empty();
     }
-    List<ElementDocs> o = Objects.nonNull(type.interfaces) ? type.interfaces : List.of();
-    return o.stream().map(ed -> ed.qualifiedName).map(docs::findType).filter(Objects::nonNull);
+    return docs.findInterfaces(type);
   }
 
   String getDocText(
@@ -178,7 +181,7 @@ class DocRef {
       List<DocVar> vars,
       Optional<String> template) {
     TypeDocs type = docRef.getType();
-    if (Objects.isNull(type.doc)) {
+    if (Objects.isNull(type.getDoc())) {
       return "";
     }
 
@@ -201,7 +204,7 @@ class DocRef {
             .flatMap(
                 docVar -> {
                   Optional<String> value =
-                      DocTableGenerator.resolveColumnSteps(docs, docRef, docVar.value, language);
+                      docVar.getPlan().resolveColumn(docs, docRef, language);
 
                   if (value.isPresent()) {
                     return Stream.of(new SimpleEntry<>("docVar:" + docVar.name, value.get()));
@@ -217,9 +220,83 @@ class DocRef {
 
     TagReplacer tagReplacer = new TagReplacer(docRef, language, specialties);
 
-    String docText = template.isEmpty() ? body : template.get().replace(asTag(BODY), body);
+    if (template.isEmpty()) {
+      return tagReplacer.replaceStrings(docs.getTemplate(body));
+    }
+
+    return tagReplacer.replaceStrings(
+        docs.getBodyTemplate(template.get()), docs.getTemplate(body));
+  }
+
+  /**
+   * Hash of everything {@link #getDocText(DocRef, String, List, List, Optional)} reads for the
+   * same arguments: the template, tables and vars, the vars and types of this ref and of all refs
+   * that rows, columns and vars are resolved from, and the interfaces, super classes and overridden
+   * methods they may inherit docs and annotations from.
+   */
+  String getDocFingerprint(
+      String language, List<DocTable> tables, List<DocVar> vars, Optional<String> template) {
+    Set<DocRef> refs = new LinkedHashSet<>();
+    refs.add(this);
+    tables.forEach(
+        docTable ->
+            docTable
+                .getRowPlan()
+                .resolveRefs(docs, this)
+                .forEach(
+                    row -> {
+                      refs.add(row);
+                      docTable
+                          .getColumns()
+                          .forEach(col -> col.getPlan().resolveRefs(docs, row).forEach(refs::add));
+                    }));
+    vars.forEach(docVar -> docVar.getPlan().resolveRefs(docs, this).forEach(refs::add));
+
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(FINGERPRINT_VERSION);
+    putString(hasher, language);
+    putString(hasher, template.orElse(null));
+    putString(hasher, GSON.toJson(tables));
+    putString(hasher, GSON.toJson(vars));
+    refs.forEach(ref -> ref.putFingerprint(hasher));
+
+    return hasher.hash().toString();
+  }
 
-    return tagReplacer.replaceStrings(docText);
+  private void putFingerprint(Hasher hasher) {
+    putString(hasher, GSON.toJson(new TreeMap<>(getVars())));
+    putString(hasher, alias);
+    putString(
+        hasher,
+        Objects.nonNull(aliasDescription) ? GSON.toJson(new TreeMap<>(aliasDescription)) : null);
+    // for method refs this is the declaring type
+    if (isType()) {
+      putString(hasher, docs.getTypeHash(type));
+      docs.findInterfaces(type).forEach(parent -> putString(hasher, docs.getTypeHash(parent)));
+      docs.findSuperClasses(type).forEach(parent -> putString(hasher, docs.getTypeHash(parent)));
+    }
+    if (isMethod()) {
+      putString(hasher, method.getSignature());
+      getDocTag(method, OVERRIDES_TAG)
+          .forEach(
+              owner -> {
+                putString(hasher, owner);
+                docs.findTypeIfPresent(owner)
+                    .ifPresent(parent -> putString(hasher, docs.getTypeHash(parent)));
+              });
+      if (Objects.nonNull(method.returnType)) {
+        // the json type of enums depends on another type
+        putString(hasher, docs.getJavaType(method.returnType).getJsonType(docs));
+      }
+    }
+  }
+
+  private static void putString(Hasher hasher, String value) {
+    if (Objects.isNull(value)) {
+      hasher.putInt(-1);
+      return;
+    }
+    hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
   }
 
   static String asTag(String name) {
@@ -263,46 +340,23 @@ class DocRef {
   }
 
   boolean hasDocs() {
-    return !Objects.isNull(getType().doc) && !getType().doc.isEmpty();
+    return !Objects.isNull(getType().getDoc()) && !getType().getDoc().isEmpty();
   }
 
   Set<String> getDocLanguages() {
-    if (Objects.isNull(getType().doc)) {
-      return Set.of();
-    }
-
-    return getType().doc.stream()
-        .flatMap(map -> map.keySet().stream())
-        .filter(key -> key.startsWith(LANG_PREFIX) && !key.startsWith(LANG_ALL))
-        .map(key -> key.replace(LANG_PREFIX, "").toLowerCase())
-        .collect(Collectors.toSet());
+    return getType().getDocLanguages();
   }
 
   static Stream<String> getDocTag(ElementDocs element, String name) {
-    if (Objects.isNull(element) || Objects.isNull(element.doc)) {
+    if (Objects.isNull(element)) {
       return Stream.of();
     }
 
-    return element.doc.stream()
-        .flatMap(map -> map.entrySet().stream())
-        .filter(entry -> Objects.equals(entry.getKey(), name))
-        .flatMap(entry -> entry.getValue().stream());
+    return element.getDocTag(name);
   }
 
   static String getDocText(ElementDocs element, String language) {
-    if (Objects.isNull(element.doc)) {
-      return "";
-    }
-
-    return element.doc.stream()
-        .flatMap(map -> map.entrySet().stream())
-        .filter(
-            entry ->
-                entry.getKey().toLowerCase().startsWith(LANG_PREFIX + language)
-                    || Objects.equals(entry.getKey(), LANG_ALL)
-                    || Objects.equals(entry.getKey(), BODY))
-        .flatMap(entry -> entry.getValue().stream())
-        .collect(Collectors.joining("\n\n"));
+    return element.getDocText(language);
   }
 
   boolean hasAlias() {
@@ -313,8 +367,19 @@ class DocRef {
     return alias;
   }
 
+  // refs are immutable, they are shared by the lookup indexes in Docs and between threads
   DocRef addVar(String name, String value) {
-    additionalVars.put(name, value);
-    return this;
+    Map<String, String> vars = new HashMap<>(additionalVars);
+    vars.put(name, value);
+
+    return new DocRef(
+        docs,
+        layer,
+        module,
+        type,
+        method,
+        alias,
+        aliasDescription,
+        Collections.unmodifiableMap(vars));
   }
 }
@@ -51,4 +51,22 @@ public class DocStep {
   List<String> params() {
     return Objects.requireNonNullElse(params, List.of());
   }
+
+  // steps are compared by value, so equal step prefixes of different tables share results
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof DocStep)) {
+      return false;
+    }
+    DocStep other = (DocStep) o;
+    return type == other.type && Objects.equals(params(), other.params());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, params());
+  }
 }
@@ -23,17 +23,26 @@ class DocTable {
     List<DocStep> value;
     String valueDefault = "";
     List<DocI18n> header;
+    private transient StepResolver.Plan plan;
 
     public Col(List<DocStep> value, List<DocI18n> header) {
       this.value = value;
       this.header = header;
     }
+
+    StepResolver.Plan getPlan() {
+      if (Objects.isNull(plan)) {
+        this.plan = StepResolver.compile(value);
+      }
+      return plan;
+    }
   }
 
   final String name;
   final List<DocStep> rows;
   final List<Col> columns;
   final ColumnSet columnSet;
+  private transient StepResolver.Plan rowPlan;
 
   private DocTable(String name, List<DocStep> rows, List<Col> columns, ColumnSet columnSet) {
     this.name = name;
@@ -42,6 +51,14 @@ class DocTable {
     this.columnSet = columnSet;
   }
 
+  // tables and columns are also created by gson, so plans are compiled on first use
+  StepResolver.Plan getRowPlan() {
+    if (Objects.isNull(rowPlan)) {
+      this.rowPlan = StepResolver.compile(rows);
+    }
+    return rowPlan;
+  }
+
   public List<Col> getColumns() {
     if (Objects.isNull(columnSet)) {
       return columns;
@@ -1,10 +1,8 @@
 package de.interactive_instruments.xtraplatform.docs;
 
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class DocTableGenerator {
 
@@ -29,14 +27,15 @@ public class DocTableGenerator {
   }
 
   String generateRows(DocTable docTable, String language) {
-    return resolveRowSteps(docs, docRef, docTable.rows, language)
+    return docTable.getRowPlan()
+        .resolveRows(docs, docRef, language)
         .map(typeRef2 -> generateRow(docs, typeRef2, docTable.getColumns(), language))
         .collect(Collectors.joining("", "", "\n\n"));
   }
 
   static String generateRow(Docs docs, DocRef docRef, List<DocTable.Col> cols, String language) {
     return cols.stream()
-        .map(col -> resolveColumnSteps(docs, docRef, col.value, language).orElse(""))
+        .map(col -> col.getPlan().resolveColumn(docs, docRef, language).orElse(""))
         .collect(Collectors.joining(" | ", "| ", " |\n"));
   }
 
@@ -52,26 +51,4 @@ public class DocTableGenerator {
             .collect(Collectors.joining(" | ", "| ", " |\n"))
         + cols.stream().map(col -> "---").collect(Collectors.joining(" | ", "| ", " |\n"));
   }
-
-  static Stream<DocRef> resolveRowSteps(
-      Docs docs, DocRef root, List<DocStep> steps, String language) {
-    Entry<Class<?>, Stream<?>> result = StepResolver.resolve(docs, root, steps, language);
-
-    if (result.getKey() != DocRef.class) {
-      throw new IllegalArgumentException();
-    }
-
-    return result.getValue().map(DocRef.class::cast);
-  }
-
-  static Optional<String> resolveColumnSteps(
-      Docs docs, DocRef root, List<DocStep> steps, String language) {
-    Entry<Class<?>, Stream<?>> result = StepResolver.resolve(docs, root, steps, language);
-
-    if (result.getKey() != String.class) {
-      throw new IllegalArgumentException();
-    }
-
-    return result.getValue().map(String.class::cast).findFirst();
-  }
 }
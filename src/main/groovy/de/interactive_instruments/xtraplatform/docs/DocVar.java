@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.Objects;
 
 class DocVar {
 
@@ -13,12 +14,21 @@ class DocVar {
 
   final String name;
   final List<DocStep> value;
+  private transient StepResolver.Plan plan;
 
   DocVar(String name, List<DocStep> value) {
     this.name = name;
     this.value = value;
   }
 
+  // vars are also created by gson, so the plan is compiled on first use
+  StepResolver.Plan getPlan() {
+    if (Objects.isNull(plan)) {
+      this.plan = StepResolver.compile(value);
+    }
+    return plan;
+  }
+
   static DocVar from(AnnotationDocs def) {
     String name = def.getAttribute("name")
         .orElseThrow();
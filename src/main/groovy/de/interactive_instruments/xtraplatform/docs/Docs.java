@@ -1,82 +1,184 @@
 package de.interactive_instruments.xtraplatform.docs;
 
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Predicate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class Docs {
 
+  private static final Gson GSON = new Gson();
+
   private final List<LayerDocs> layers;
+  private final List<DocRef> types;
+  private final Map<String, DocRef> typesByName;
+  private final Map<String, List<DocRef>> typesByInterface;
+  private final Map<String, List<DocRef>> typesBySuperClass;
+  private final Map<String, List<DocRef>> typesByAnnotation;
+  private final Map<MethodDocs, Resolved<MethodDocs>> overrides;
+  private final Map<TypeDocs, Resolved<TypeDocs>> interfaces;
   private final Map<String, DocTableGenerator> tableGenerators;
   private final Map<String, Map<String, String>> vars;
+  private final Map<Map.Entry<DocRef, List<DocStep>>, List<DocRef>> stepResults;
+  private final Map<String, TagReplacer.Template> templates;
+  private final Map<String, TagReplacer.BodyTemplate> bodyTemplates;
+  private final Map<String, JavaType> javaTypes;
+  private final Map<TypeDocs, String> typeHashes;
 
   Docs(List<LayerDocs> layers) {
     this.layers = layers;
-    this.tableGenerators = new HashMap<>();
-    this.vars = new HashMap<>();
+    this.types = new ArrayList<>();
+    this.typesByName = new HashMap<>();
+    this.typesByInterface = new HashMap<>();
+    this.typesBySuperClass = new HashMap<>();
+    this.typesByAnnotation = new HashMap<>();
+    this.overrides = new ConcurrentHashMap<>();
+    this.interfaces = new ConcurrentHashMap<>();
+    this.tableGenerators = new ConcurrentHashMap<>();
+    this.vars = new ConcurrentHashMap<>();
+    this.stepResults = new ConcurrentHashMap<>();
+    this.templates = new ConcurrentHashMap<>();
+    this.bodyTemplates = new ConcurrentHashMap<>();
+    this.javaTypes = new ConcurrentHashMap<>();
+    this.typeHashes = new ConcurrentHashMap<>();
+
+    index();
+  }
+
+  // one canonical ref per type, first occurrence of a qualified name wins for lookups by name
+  private void index() {
+    for (LayerDocs layer : layers) {
+      List<DocRef> layerTypes = new ArrayList<>();
+      layer.forEachType((module, type) -> layerTypes.add(new DocRef(this, layer, module, type)));
+
+      for (DocRef typeRef : layerTypes) {
+        types.add(typeRef);
+        typesByName.putIfAbsent(typeRef.getType().qualifiedName, typeRef);
+      }
+
+      LayerDocs.Index index = layer.getIndex();
+      addTo(typesByInterface, index.interfaces, layerTypes);
+      addTo(typesBySuperClass, index.superClasses, layerTypes);
+      addTo(typesByAnnotation, index.annotations, layerTypes);
+    }
+  }
+
+  private static void addTo(
+      Map<String, List<DocRef>> index,
+      Map<String, List<Integer>> layerIndex,
+      List<DocRef> layerTypes) {
+    layerIndex.forEach(
+        (key, ordinals) -> {
+          List<DocRef> typeRefs = index.computeIfAbsent(key, ignore -> new ArrayList<>());
+          for (int ordinal : ordinals) {
+            typeRefs.add(layerTypes.get(ordinal));
+          }
+        });
   }
 
   TypeDocs findType(String qualifiedName) {
-    return layers.stream()
-        .map(layer -> layer.getType(qualifiedName))
-        .filter(java.util.Optional::isPresent)
-        .map(java.util.Optional::get)
-        .findFirst()
-        .orElseThrow(
-            () ->
-                new IllegalArgumentException(
-                    "Referenced type could not be resolved: " + qualifiedName));
+    return findTypeRef(qualifiedName).getType();
   }
 
   DocRef findTypeRef(String qualifiedName) {
-    return layers.stream()
-        .flatMap(
-            layer ->
-                getTypes(layer, typeDocs -> Objects.equals(typeDocs.qualifiedName, qualifiedName)))
-        .findFirst()
-        .orElseThrow(
-            () ->
-                new IllegalArgumentException(
-                    "Referenced type could not be resolved: " + qualifiedName));
+    DocRef typeRef = typesByName.get(qualifiedName);
+
+    if (Objects.isNull(typeRef)) {
+      throw unresolvable(qualifiedName);
+    }
+
+    return typeRef;
+  }
+
+  Optional<TypeDocs> findTypeIfPresent(String qualifiedName) {
+    return Optional.ofNullable(typesByName.get(qualifiedName)).map(DocRef::getType);
+  }
+
+  private static IllegalArgumentException unresolvable(String qualifiedName) {
+    return new IllegalArgumentException("Referenced type could not be resolved: " + qualifiedName);
   }
 
   List<DocRef> findTypeByInterface(String qualifiedName) {
-    return layers.stream()
-        .flatMap(layer -> getTypes(layer, typeDocs -> typeDocs.hasInterface(qualifiedName)))
-        .collect(Collectors.toList());
+    return Collections.unmodifiableList(typesByInterface.getOrDefault(qualifiedName, List.of()));
   }
 
   List<DocRef> findTypeBySuperClass(String qualifiedName) {
-    return layers.stream()
-        .flatMap(layer -> getTypes(layer, typeDocs -> typeDocs.hasSuperClass(qualifiedName)))
-        .collect(Collectors.toList());
+    return Collections.unmodifiableList(typesBySuperClass.getOrDefault(qualifiedName, List.of()));
+  }
+
+  // the super class chain as far as it is part of the docs
+  Stream<TypeDocs> findSuperClasses(TypeDocs type) {
+    List<TypeDocs> superClasses = new ArrayList<>();
+    TypeDocs current = type;
+
+    while (Objects.nonNull(current.superClass)) {
+      DocRef typeRef = typesByName.get(current.superClass.qualifiedName);
+      if (Objects.isNull(typeRef) || superClasses.contains(typeRef.getType())) {
+        break;
+      }
+      current = typeRef.getType();
+      superClasses.add(current);
+    }
+
+    return superClasses.stream();
+  }
+
+  Stream<MethodDocs> findOverrides(MethodDocs method) {
+    return overrides.computeIfAbsent(method, this::resolveOverrides).stream();
+  }
+
+  Stream<TypeDocs> findInterfaces(TypeDocs type) {
+    return interfaces.computeIfAbsent(type, this::resolveInterfaces).stream();
   }
 
-  Stream<DocRef> getTypes(LayerDocs layer, Predicate<TypeDocs> predicate) {
-    if (Objects.isNull(layer.modules)) {
-      return Stream.of();
+  private Resolved<MethodDocs> resolveOverrides(MethodDocs method) {
+    List<MethodDocs> resolved = new ArrayList<>();
+
+    for (String qualifiedName :
+        DocRef.getDocTag(method, DocRef.OVERRIDES_TAG).collect(Collectors.toList())) {
+      DocRef typeRef = typesByName.get(qualifiedName);
+      if (Objects.isNull(typeRef)) {
+        return new Resolved<>(resolved, qualifiedName);
+      }
+      typeRef.getType().findOverride(method).ifPresent(resolved::add);
     }
 
-    return layer.modules.values().stream()
-        .flatMap(
-            module ->
-                module.getTypes(predicate).map(type -> new DocRef(this, layer, module, type)));
+    return new Resolved<>(resolved, null);
+  }
+
+  private Resolved<TypeDocs> resolveInterfaces(TypeDocs type) {
+    List<TypeDocs> resolved = new ArrayList<>();
+
+    if (type.hasInterfaces()) {
+      for (ElementDocs elementDocs : type.interfaces) {
+        DocRef typeRef = typesByName.get(elementDocs.qualifiedName);
+        if (Objects.isNull(typeRef)) {
+          return new Resolved<>(resolved, elementDocs.qualifiedName);
+        }
+        resolved.add(typeRef.getType());
+      }
+    }
+
+    return new Resolved<>(resolved, null);
+  }
+
+  List<DocRef> findTypeByAnnotation(String qualifiedName) {
+    return Collections.unmodifiableList(typesByAnnotation.getOrDefault(qualifiedName, List.of()));
   }
 
   Stream<DocRef> streamTypes() {
-    return layers.stream()
-        .flatMap(
-            layer ->
-                layer.modules.values().stream()
-                    .flatMap(
-                        module ->
-                            module.api.values().stream()
-                                .map(type -> new DocRef(this, layer, module, type))));
+    return types.stream();
   }
 
   Stream<LayerDocs> streamLayers() {
@@ -84,8 +186,7 @@ public class Docs {
   }
 
   List<DocFile> getDocFiles() {
-    return streamTypes()
-        .filter(typeRef -> typeRef.getType().hasAnnotation(DocFile.ANNOTATION))
+    return findTypeByAnnotation(DocFile.ANNOTATION).stream()
         .map(
             typeRef ->
                 DocFile.from(typeRef, typeRef.getType().getAnnotation(DocFile.ANNOTATION).get()))
@@ -93,8 +194,7 @@ public class Docs {
   }
 
   List<DocFilesTemplate> getDocFilesTemplates() {
-    return streamTypes()
-        .filter(typeRef -> typeRef.getType().hasAnnotation(DocFilesTemplate.ANNOTATION))
+    return findTypeByAnnotation(DocFilesTemplate.ANNOTATION).stream()
         .map(
             typeRef ->
                 DocFilesTemplate.from(
@@ -116,6 +216,43 @@ public class Docs {
         typeRef.getType().qualifiedName, ignore -> new DocTableGenerator(typeRef, this));
   }
 
+  // results of language independent step prefixes, see StepResolver.Plan
+  List<DocRef> getStepResults(
+      DocRef root, List<DocStep> steps, Supplier<Stream<DocRef>> resolver) {
+    Map.Entry<DocRef, List<DocStep>> key = new SimpleImmutableEntry<>(root, steps);
+    List<DocRef> results = stepResults.get(key);
+
+    if (Objects.isNull(results)) {
+      List<DocRef> resolved =
+          Collections.unmodifiableList(resolver.get().collect(Collectors.toList()));
+      results = Objects.requireNonNullElse(stepResults.putIfAbsent(key, resolved), resolved);
+    }
+
+    return results;
+  }
+
+  TagReplacer.Template getTemplate(String text) {
+    return templates.computeIfAbsent(text, TagReplacer::parse);
+  }
+
+  TagReplacer.BodyTemplate getBodyTemplate(String text) {
+    return bodyTemplates.computeIfAbsent(text, TagReplacer::parseWithBody);
+  }
+
+  JavaType getJavaType(String type) {
+    return javaTypes.computeIfAbsent(type, JavaType::new);
+  }
+
+  // content hash of a type including its docs, methods and fields, see DocRef#getDocFingerprint
+  String getTypeHash(TypeDocs type) {
+    return typeHashes.computeIfAbsent(
+        type,
+        ignore -> {
+          type.load();
+          return Hashing.sha256().hashString(GSON.toJson(type), StandardCharsets.UTF_8).toString();
+        });
+  }
+
   Map<String, String> getVars(LayerDocs layer, ModuleDocs module) {
     return vars.computeIfAbsent(
         layer.id + module.id,
@@ -146,4 +283,31 @@ public class Docs {
                 "module.deprecated",
                 Boolean.toString(module.deprecated)));
   }
+
+  /**
+   * Memoized references in declaration order. Resolution stops at the first reference that is not
+   * known, the error is only raised when a consumer actually reaches it.
+   */
+  private static class Resolved<T> {
+    private final List<T> values;
+    private final String unresolved;
+
+    Resolved(List<T> values, String unresolved) {
+      this.values = values;
+      this.unresolved = unresolved;
+    }
+
+    Stream<T> stream() {
+      if (Objects.isNull(unresolved)) {
+        return values.stream();
+      }
+      return Stream.concat(
+          values.stream(),
+          Stream.of(unresolved)
+              .map(
+                  qualifiedName -> {
+                    throw unresolvable(qualifiedName);
+                  }));
+    }
+  }
 }
@@ -0,0 +1,75 @@
+package de.interactive_instruments.xtraplatform.docs;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Parses every layer docs jar only once per build, keyed by file and content hash, and shares the
+ * resulting {@link Docs} between all docs tasks.
+ */
+public abstract class DocsService
+    implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+
+  private static final Logger LOGGER = Logging.getLogger(DocsService.class);
+  private static final String NAME = "xtraplatformDocs";
+
+  private final Interner interner;
+  private final Map<String, LayerDocs> layers;
+  private final Map<List<String>, Docs> docs;
+
+  public DocsService() {
+    this.interner = new Interner();
+    this.layers = new ConcurrentHashMap<>();
+    this.docs = new ConcurrentHashMap<>();
+  }
+
+  static Provider<DocsService> register(Project project) {
+    return project
+        .getGradle()
+        .getSharedServices()
+        .registerIfAbsent(NAME, DocsService.class, spec -> {});
+  }
+
+  Docs getDocs(Collection<File> jars, BiFunction<File, Interner, LayerDocs> reader) {
+    List<String> keys =
+        jars.stream()
+            .map(
+                jar -> {
+                  String key = key(jar);
+                  layers.computeIfAbsent(key, ignore -> reader.apply(jar, interner));
+                  return key;
+                })
+            .collect(Collectors.toList());
+
+    return docs.computeIfAbsent(
+        keys, ignore -> new Docs(keys.stream().map(layers::get).collect(Collectors.toList())));
+  }
+
+  @Override
+  public void close() {
+    LOGGER.info(interner.report());
+  }
+
+  private static String key(File jar) {
+    try {
+      return jar.getAbsolutePath() + "@" + Files.asByteSource(jar).hash(Hashing.sha256());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not hash layer docs " + jar, e);
+    }
+  }
+}
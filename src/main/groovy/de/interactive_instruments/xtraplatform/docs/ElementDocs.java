@@ -1,10 +1,14 @@
 package de.interactive_instruments.xtraplatform.docs;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 class ElementDocs {
@@ -13,6 +17,17 @@ class ElementDocs {
   List<AnnotationDocs> annotations;
   List<String> types;
   Set<String> modifiers;
+  // lazily computed, published safely so elements can be read concurrently
+  private transient volatile Map<String, List<String>> docTags;
+  private transient volatile Map<String, String> docTexts;
+  private transient volatile Set<String> docLanguages;
+
+  void load() {}
+
+  List<Map<String, List<String>>> getDoc() {
+    load();
+    return doc;
+  }
 
   String getName() {
     if (Objects.nonNull(qualifiedName) && qualifiedName.contains(".")) {
@@ -45,6 +60,64 @@ class ElementDocs {
 
     return annotations.stream();
   }
+
+  Stream<String> getDocTag(String name) {
+    return getDocTags().getOrDefault(name, List.of()).stream();
+  }
+
+  String getDocText(String language) {
+    if (Objects.isNull(getDoc())) {
+      return "";
+    }
+    if (Objects.isNull(docTexts)) {
+      synchronized (this) {
+        if (Objects.isNull(docTexts)) {
+          this.docTexts = new ConcurrentHashMap<>();
+        }
+      }
+    }
+
+    return docTexts.computeIfAbsent(
+        language,
+        lang ->
+            doc.stream()
+                .flatMap(map -> map.entrySet().stream())
+                .filter(
+                    entry ->
+                        entry.getKey().toLowerCase().startsWith(DocRef.LANG_PREFIX + lang)
+                            || Objects.equals(entry.getKey(), DocRef.LANG_ALL)
+                            || Objects.equals(entry.getKey(), DocRef.BODY))
+                .flatMap(entry -> entry.getValue().stream())
+                .collect(Collectors.joining("\n\n")));
+  }
+
+  Set<String> getDocLanguages() {
+    if (Objects.isNull(docLanguages)) {
+      this.docLanguages =
+          getDocTags().keySet().stream()
+              .filter(key -> key.startsWith(DocRef.LANG_PREFIX) && !key.startsWith(DocRef.LANG_ALL))
+              .map(key -> key.replace(DocRef.LANG_PREFIX, "").toLowerCase())
+              .collect(Collectors.toUnmodifiableSet());
+    }
+    return docLanguages;
+  }
+
+  // tag name -> values of all doc entries in declaration order, built once on first access
+  private Map<String, List<String>> getDocTags() {
+    if (Objects.isNull(docTags)) {
+      Map<String, List<String>> tags = new HashMap<>();
+      if (Objects.nonNull(getDoc())) {
+        doc.forEach(
+            map ->
+                map.forEach(
+                    (name, values) ->
+                        tags.computeIfAbsent(name, ignore -> new ArrayList<>()).addAll(values)));
+      }
+      this.docTags = tags;
+    }
+    return docTags;
+  }
+
   static String asTag(String name) {
     return String.format("{@%s}", name);
   }
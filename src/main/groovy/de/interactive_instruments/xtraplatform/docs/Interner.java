@@ -0,0 +1,145 @@
+package de.interactive_instruments.xtraplatform.docs;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Deduplicates strings and string sets while layer docs are loaded. Qualified names, annotation
+ * names, modifiers and type strings repeat in every module of every layer, with one interner per
+ * load all layers share a single instance of each.
+ */
+class Interner {
+
+  private static final Type SET_STRING = new TypeToken<Set<String>>() {}.getType();
+
+  // rough object sizes on a 64 bit jvm with compressed oops, only used for the report
+  private static final int STRING_OVERHEAD = 40;
+  private static final int SET_OVERHEAD = 88;
+  private static final int SET_ENTRY = 40;
+
+  private final Map<String, String> strings;
+  private final Map<Set<String>, Set<String>> sets;
+  private long stringsRead;
+  private long setsRead;
+  private long bytesSaved;
+
+  Interner() {
+    this.strings = new HashMap<>();
+    this.sets = new HashMap<>();
+  }
+
+  synchronized String intern(String string) {
+    if (Objects.isNull(string)) {
+      return null;
+    }
+    stringsRead++;
+    String interned = strings.putIfAbsent(string, string);
+    if (Objects.nonNull(interned)) {
+      bytesSaved += STRING_OVERHEAD + string.length();
+      return interned;
+    }
+    return string;
+  }
+
+  synchronized Set<String> intern(Set<String> set) {
+    if (Objects.isNull(set)) {
+      return null;
+    }
+    setsRead++;
+    Set<String> interned = sets.get(set);
+    if (Objects.nonNull(interned)) {
+      bytesSaved += SET_OVERHEAD + (long) SET_ENTRY * set.size();
+      return interned;
+    }
+    Set<String> canonical = Collections.unmodifiableSet(set);
+    sets.put(canonical, canonical);
+    return canonical;
+  }
+
+  Gson gson() {
+    TypeAdapter<String> stringAdapter = new StringAdapter();
+
+    return new GsonBuilder()
+        .registerTypeAdapter(String.class, stringAdapter)
+        .registerTypeAdapter(SET_STRING, new SetAdapter(stringAdapter))
+        .create();
+  }
+
+  synchronized String report() {
+    return String.format(
+        "Interned layer docs: %d of %d strings and %d of %d string sets unique, ~%d KB saved",
+        strings.size(), stringsRead, sets.size(), setsRead, bytesSaved / 1024);
+  }
+
+  private class StringAdapter extends TypeAdapter<String> {
+
+    @Override
+    public void write(JsonWriter out, String value) throws IOException {
+      out.value(value);
+    }
+
+    @Override
+    public String read(JsonReader in) throws IOException {
+      JsonToken token = in.peek();
+      if (token == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      if (token == JsonToken.BOOLEAN) {
+        return intern(Boolean.toString(in.nextBoolean()));
+      }
+      return intern(in.nextString());
+    }
+  }
+
+  private class SetAdapter extends TypeAdapter<Set<String>> {
+
+    private final TypeAdapter<String> stringAdapter;
+
+    SetAdapter(TypeAdapter<String> stringAdapter) {
+      this.stringAdapter = stringAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, Set<String> value) throws IOException {
+      if (Objects.isNull(value)) {
+        out.nullValue();
+        return;
+      }
+      out.beginArray();
+      for (String string : value) {
+        stringAdapter.write(out, string);
+      }
+      out.endArray();
+    }
+
+    @Override
+    public Set<String> read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      Set<String> set = new LinkedHashSet<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        set.add(stringAdapter.read(in));
+      }
+      in.endArray();
+
+      return intern(set);
+    }
+  }
+}
@@ -0,0 +1,298 @@
+package de.interactive_instruments.xtraplatform.docs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parsed type signature as found in the docs, e.g. {@code
+ * java.util.Optional<java.util.List<java.lang.String>>}. Instances are cached per {@link Docs}, see
+ * {@link Docs#getJavaType(String)}, so that the generators parse every signature and classify its
+ * json type only once.
+ */
+class JavaType {
+
+  private static final String OPTIONAL = "java.util.Optional";
+  private static final String OPTIONAL_OF = "java.util.Optional<";
+  private static final String ARRAY = "[]";
+  private static final String WILDCARD = "? extends ";
+  private static final List<String> COLLECTION_TYPES =
+      List.of(
+          "java.util.List",
+          "java.util.Set",
+          "java.util.Collection",
+          "com.google.common.collect.ImmutableList",
+          "com.google.common.collect.ImmutableSet");
+  private static final List<String> MAP_TYPES =
+      List.of("java.util.Map<", "com.google.common.collect.ImmutableMap<");
+  private static final String OPTIONAL_MAP = "java.util.Optional<java.util.Map<";
+  private static final String BUILDABLE_MAP =
+      "de.ii.xtraplatform.entities.domain.maptobuilder.BuildableMap<";
+  private static final Set<String> STRING_TYPES =
+      Stream.of("java.net.URI", "java.util.Date", "java.time.ZoneId", "io.dropwizard.util.Duration")
+          .map(JavaType::lowerCase)
+          .collect(Collectors.toSet());
+
+  private final String type;
+  private final String rawType;
+  private final List<JavaType> typeArguments;
+  private final boolean optional;
+  private final boolean array;
+  private final boolean collection;
+  private final Set<String> simpleNames;
+  private final Set<String> plainNames;
+  private volatile String jsonType;
+  private volatile String defType;
+  private volatile String immutableDefType;
+
+  JavaType(String type) {
+    this.type = type;
+    this.rawType = type.contains("<") ? type.substring(0, type.indexOf("<")) : type;
+    this.typeArguments = parseTypeArguments(type);
+    this.optional = type.startsWith(OPTIONAL);
+    this.array = type.endsWith(ARRAY);
+    this.collection = COLLECTION_TYPES.stream().anyMatch(rawType::startsWith);
+
+    // the names a type matches case-insensitively, i.e. itself, java.lang.X, java.util.Optional<X>,
+    // java.util.Optional<java.lang.X> and java.util.OptionalX
+    String lower = lowerCase(type);
+    String lowerOptional = lowerCase(OPTIONAL);
+    String unwrapped =
+        lower.startsWith(lowerCase(OPTIONAL_OF)) && lower.endsWith(">")
+            ? lower.substring(OPTIONAL_OF.length(), lower.length() - 1)
+            : null;
+    this.plainNames = Objects.nonNull(unwrapped) ? Set.of(lower, unwrapped) : Set.of(lower);
+    this.simpleNames =
+        Stream.of(
+                lower,
+                unwrapped,
+                withoutLang(lower),
+                withoutLang(unwrapped),
+                lower.startsWith(lowerOptional) ? lower.substring(lowerOptional.length()) : null)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+  }
+
+  String getRawType() {
+    return rawType;
+  }
+
+  List<JavaType> getTypeArguments() {
+    return typeArguments;
+  }
+
+  boolean isOptional() {
+    return optional;
+  }
+
+  boolean isArray() {
+    return array || collection;
+  }
+
+  String getJsonType(Docs docs) {
+    if (Objects.isNull(jsonType)) {
+      this.jsonType = classify(docs);
+    }
+    return jsonType;
+  }
+
+  /** Matches case-insensitively and ignores java.lang and optional wrappers. */
+  boolean hasSimpleType(String... matches) {
+    for (String match : matches) {
+      if (simpleNames.contains(lowerCase(match))) {
+        return true;
+      }
+    }
+    if (matches.length == 1 && "string".equals(matches[0])) {
+      for (String name : plainNames) {
+        if (STRING_TYPES.contains(name)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  /** The item type of lists, sets, collections and arrays, otherwise the type itself. */
+  String getItemType() {
+    if (COLLECTION_TYPES.contains(rawType) && !typeArguments.isEmpty()) {
+      return type.substring(rawType.length() + 1, type.length() - 1);
+    } else if (array) {
+      return type.substring(0, type.length() - ARRAY.length());
+    }
+
+    return type;
+  }
+
+  /**
+   * The value type of maps, also when wrapped in an optional, or the key type of buildable maps,
+   * otherwise the type itself.
+   */
+  String getMapValueType() {
+    if (MAP_TYPES.stream().anyMatch(type::startsWith)) {
+      return type.substring(type.indexOf(",") + 1, type.length() - 1);
+    } else if (type.startsWith(OPTIONAL_MAP)) {
+      return type.substring(type.indexOf(",") + 1, type.indexOf(">"));
+    } else if (type.startsWith(BUILDABLE_MAP)) {
+      return type.substring(type.indexOf("<") + 1, type.indexOf(","));
+    }
+
+    return type;
+  }
+
+  /**
+   * The qualified name of the schema definition for this type, i.e. optionals are unwrapped, inner
+   * classes are moved to the parent package and optionally the immutable implementation is used.
+   */
+  String getDefType(boolean immutable) {
+    if (immutable) {
+      if (Objects.isNull(immutableDefType)) {
+        this.immutableDefType = toDefType(true);
+      }
+      return immutableDefType;
+    }
+    if (Objects.isNull(defType)) {
+      this.defType = toDefType(false);
+    }
+    return defType;
+  }
+
+  /** The raw type followed by all nested type arguments, depth-first. */
+  List<String> getAllRawTypes() {
+    List<String> types = new ArrayList<>();
+    collectRawTypes(this, types);
+    return types;
+  }
+
+  /** The raw type with the binary name for inner classes, as expected by reflection. */
+  String getBinaryName() {
+    return toBinaryName(rawType);
+  }
+
+  static String toBinaryName(String type) {
+    if (!type.contains(".")) {
+      return type;
+    }
+
+    String pkg = type.substring(0, type.lastIndexOf("."));
+    String name = type.substring(type.lastIndexOf(".") + 1);
+    String parentName = pkg.substring(pkg.lastIndexOf(".") + 1);
+
+    boolean isInnerClass = Character.isUpperCase(parentName.charAt(0));
+    String separator = isInnerClass ? "$" : ".";
+
+    return pkg + separator + name;
+  }
+
+  private String classify(Docs docs) {
+    if (isArray()) {
+      return "array";
+    }
+    if (hasSimpleType("string") || type.startsWith("io.dropwizard.util.DataSize")) {
+      return "string";
+    }
+    if (hasSimpleType("boolean")) {
+      return "boolean";
+    }
+    if (hasSimpleType("int", "integer", "long", "double", "float")) {
+      return "number";
+    }
+    if (hasSuperType(docs, "enum")) {
+      return "string";
+    }
+
+    return "object";
+  }
+
+  private boolean hasSuperType(Docs docs, String... matches) {
+    try {
+      TypeDocs typeDocs =
+          optional
+              ? docs.findType(type.substring(OPTIONAL_OF.length(), type.length() - 1))
+              : docs.findType(type);
+      if (Objects.nonNull(typeDocs) && Objects.nonNull(typeDocs.superClass)) {
+        return docs.getJavaType(typeDocs.superClass.qualifiedName).hasSimpleType(matches);
+      }
+    } catch (Throwable e) {
+      // ignore
+    }
+    return false;
+  }
+
+  private String toDefType(boolean immutable) {
+    if (!type.contains(".")) {
+      return type;
+    }
+
+    int close = type.indexOf(">");
+    String cleaned =
+        type.startsWith(OPTIONAL_OF) && close >= 0
+            ? type.substring(OPTIONAL_OF.length(), close) + type.substring(close + 1)
+            : type;
+
+    String pkg = cleaned.substring(0, cleaned.lastIndexOf("."));
+    String name = cleaned.substring(cleaned.lastIndexOf(".") + 1);
+    String parentPkg = pkg.substring(0, pkg.lastIndexOf("."));
+    String parentName = pkg.substring(pkg.lastIndexOf(".") + 1);
+
+    String cleanedPkg = Character.isUpperCase(parentName.charAt(0)) ? parentPkg : pkg;
+    String prefix = !immutable || name.startsWith("Immutable") ? "." : ".Immutable";
+
+    return cleanedPkg + prefix + name;
+  }
+
+  private static void collectRawTypes(JavaType type, List<String> types) {
+    types.add(type.rawType);
+    for (JavaType typeArgument : type.typeArguments) {
+      collectRawTypes(typeArgument, types);
+    }
+  }
+
+  private static List<JavaType> parseTypeArguments(String type) {
+    int start = type.indexOf("<");
+    if (start < 0) {
+      return List.of();
+    }
+    int end = type.lastIndexOf(">");
+    if (end < start) {
+      end = type.length();
+    }
+
+    List<JavaType> typeArguments = new ArrayList<>();
+    int depth = 0;
+    int from = start + 1;
+    for (int i = from; i < end; i++) {
+      char c = type.charAt(i);
+      if (c == '<') {
+        depth++;
+      } else if (c == '>') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        typeArguments.add(parseTypeArgument(type.substring(from, i)));
+        from = i + 1;
+      }
+    }
+    typeArguments.add(parseTypeArgument(type.substring(from, end)));
+
+    return typeArguments;
+  }
+
+  private static JavaType parseTypeArgument(String typeArgument) {
+    return new JavaType(typeArgument.replace(WILDCARD, "").trim());
+  }
+
+  private static String withoutLang(String lowerCaseType) {
+    return Objects.nonNull(lowerCaseType) && lowerCaseType.startsWith("java.lang.")
+        ? lowerCaseType.substring("java.lang.".length())
+        : null;
+  }
+
+  private static String lowerCase(String type) {
+    return type.toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,270 @@
+package de.interactive_instruments.xtraplatform.docs;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import de.interactive_instruments.xtraplatform.JarEntries;
+import de.interactive_instruments.xtraplatform.Maintenance;
+import de.interactive_instruments.xtraplatform.Maturity;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Streaming reader for layer-docs.json.
+ *
+ * <p>The first pass only materializes the layer and module attributes and for every type the
+ * attributes needed by the lookup indexes in {@link Docs} (name, super class, interfaces,
+ * annotations), while doc comments, methods and fields are skipped. The raw api of every module is
+ * kept instead, and when a type body is accessed for the first time, only the bodies of the types
+ * of that module are parsed from it.
+ */
+class JsonLayerDocs {
+
+  private static final String MODULES = "modules";
+  private static final String API = "api";
+
+  private final String name;
+  private final Source source;
+  private final Interner interner;
+  private final Gson gson;
+  private final TypeAdapter<String> strings;
+
+  private JsonLayerDocs(String name, Source source, Interner interner) {
+    this.name = name;
+    this.source = source;
+    this.interner = interner;
+    this.gson = interner.gson();
+    this.strings = gson.getAdapter(String.class);
+  }
+
+  static LayerDocs read(File jar, String entry, Interner interner) throws IOException {
+    return new JsonLayerDocs(jar + "!/" + entry, () -> JarEntries.open(jar, entry), interner)
+        .readIndex();
+  }
+
+  private LayerDocs readIndex() throws IOException {
+    LayerDocs layer = new LayerDocs();
+
+    try (JsonReader in = open()) {
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "id":
+            layer.id = strings.read(in);
+            break;
+          case "name":
+            layer.name = strings.read(in);
+            break;
+          case "version":
+            layer.version = strings.read(in);
+            break;
+          case "description":
+            layer.description = strings.read(in);
+            break;
+          case MODULES:
+            layer.modules = readMap(in, this::readModule);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+    }
+
+    return layer;
+  }
+
+  private ModuleDocs readModule(JsonReader in, String key) throws IOException {
+    ModuleDocs module = new ModuleDocs();
+
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "id":
+          module.id = strings.read(in);
+          break;
+        case "name":
+          module.name = strings.read(in);
+          break;
+        case "version":
+          module.version = strings.read(in);
+          break;
+        case "description":
+          module.description = strings.read(in);
+          break;
+        case "descriptionDe":
+          module.descriptionDe = strings.read(in);
+          break;
+        case "maturity":
+          module.maturity = gson.getAdapter(Maturity.class).read(in);
+          break;
+        case "maintenance":
+          module.maintenance = gson.getAdapter(Maintenance.class).read(in);
+          break;
+        case "deprecated":
+          module.deprecated = in.nextBoolean();
+          break;
+        case "docIgnore":
+          module.docIgnore = in.nextBoolean();
+          break;
+        case "exports":
+          module.exports = read(in, new TypeToken<Set<String>>() {});
+          break;
+        case "requires":
+          module.requires = read(in, new TypeToken<Set<String>>() {});
+          break;
+        case API:
+          module.api = new ModuleBodies(module, in).readTypes();
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+
+    return module;
+  }
+
+  private TypeDocs readType(JsonReader in, ModuleBodies bodies) throws IOException {
+    TypeDocs type = new TypeDocs();
+
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "qualifiedName":
+          type.qualifiedName = strings.read(in);
+          break;
+        case "superClass":
+          type.superClass = read(in, new TypeToken<ElementDocs>() {});
+          break;
+        case "interfaces":
+          type.interfaces = read(in, new TypeToken<List<ElementDocs>>() {});
+          break;
+        case "annotations":
+          type.annotations = read(in, new TypeToken<List<AnnotationDocs>>() {});
+          break;
+        case "types":
+          type.types = read(in, new TypeToken<List<String>>() {});
+          break;
+        case "modifiers":
+          type.modifiers = read(in, new TypeToken<Set<String>>() {});
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+
+    type.loadLazily(ignore -> bodies.load());
+
+    return type;
+  }
+
+  // the raw api of a module, parsed once for the index and once more for the bodies
+  private class ModuleBodies {
+    private final ModuleDocs module;
+    private String api;
+
+    ModuleBodies(ModuleDocs module, JsonReader in) throws IOException {
+      this.module = module;
+      this.api = gson.getAdapter(JsonElement.class).read(in).toString();
+    }
+
+    Map<String, TypeDocs> readTypes() throws IOException {
+      try (JsonReader in = open()) {
+        return readMap(in, (in2, key) -> readType(in2, this));
+      }
+    }
+
+    synchronized void load() {
+      if (Objects.isNull(api)) {
+        return;
+      }
+      try (JsonReader in = open()) {
+        in.beginObject();
+        while (in.hasNext()) {
+          TypeDocs type = module.api.get(in.nextName());
+          if (Objects.nonNull(type)) {
+            readBody(in, type);
+          } else {
+            in.skipValue();
+          }
+        }
+        in.endObject();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not read layer docs from " + name, e);
+      }
+      this.api = null;
+    }
+
+    private JsonReader open() {
+      return new JsonReader(new StringReader(api));
+    }
+  }
+
+  private void readBody(JsonReader in, TypeDocs type) throws IOException {
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "doc":
+          type.doc = read(in, new TypeToken<List<Map<String, List<String>>>>() {});
+          break;
+        case "methods":
+          type.methods = read(in, new TypeToken<List<MethodDocs>>() {});
+          break;
+        case "fields":
+          type.fields = read(in, new TypeToken<List<VariableDocs>>() {});
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+  }
+
+  private JsonReader open() throws IOException {
+    return new JsonReader(new InputStreamReader(source.open(), StandardCharsets.UTF_8));
+  }
+
+  private <T> T read(JsonReader in, TypeToken<T> type) throws IOException {
+    return gson.getAdapter(type).read(in);
+  }
+
+  private <T> Map<String, T> readMap(JsonReader in, Reader<T> reader) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    Map<String, T> values = new LinkedHashMap<>();
+
+    in.beginObject();
+    while (in.hasNext()) {
+      String key = interner.intern(in.nextName());
+      values.put(key, reader.read(in, key));
+    }
+    in.endObject();
+
+    return values;
+  }
+
+  private interface Source {
+    InputStream open() throws IOException;
+  }
+
+  private interface Reader<T> {
+    T read(JsonReader in, String key) throws IOException;
+  }
+}
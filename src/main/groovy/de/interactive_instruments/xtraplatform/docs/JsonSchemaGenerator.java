@@ -7,213 +7,103 @@ import de.interactive_instruments.xtraplatform.docs.DocStep.Step;
 import java.lang.reflect.Type;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class JsonSchemaGenerator {
 
   static final Type LIST_MAP = new TypeToken<List<Map<String, Object>>>() {}.getType();
+  static final String SCHEMA = "https://json-schema.org/draft/2020-12/schema";
+  static final String FRAGMENTS_DIR = "defs";
+
+  private static final String DEFS_REF = "#/$defs/";
+
+  private static final StepResolver.Plan PROPERTIES =
+      StepResolver.compile(
+          List.of(new DocStep(Step.JSON_PROPERTIES, List.of("skipDocIgnore"))));
+  private static final StepResolver.Plan IMPLEMENTATIONS =
+      StepResolver.compile(List.of(new DocStep(Step.IMPLEMENTATIONS)));
+  private static final StepResolver.Plan BODY =
+      StepResolver.compile(List.of(new DocStep(Step.TAG, List.of("{@body}"))));
+  private static final StepResolver.Plan JSON_NAME =
+      StepResolver.compile(List.of(new DocStep(Step.JSON_NAME)));
+  private static final StepResolver.Plan JSON_TYPE =
+      StepResolver.compile(List.of(new DocStep(Step.JSON_TYPE)));
 
   private final Docs docs;
   private final Gson gson;
-  private final Map<String, Object> nestedDefs;
-  private final Set<String> inProgressDefs;
-  private final Map<String, String> keys;
+  private final Map<DocRef, ObjectDef> objectDefs;
+  private final boolean qualifiedKeys;
 
   public JsonSchemaGenerator(Docs docs, Gson gson) {
+    this(docs, gson, false);
+  }
+
+  /**
+   * @param qualifiedKeys use the qualified type names as keys of the definitions, so that they are
+   *     the same in all schemas, see {@link #toFragments(Map, Map)}
+   */
+  public JsonSchemaGenerator(Docs docs, Gson gson, boolean qualifiedKeys) {
     this.docs = docs;
     this.gson = gson;
-    this.nestedDefs = new LinkedHashMap<>();
-    this.inProgressDefs = new HashSet<>();
-    this.keys = new LinkedHashMap<>();
+    this.objectDefs = new ConcurrentHashMap<>();
+    this.qualifiedKeys = qualifiedKeys;
   }
 
+  /**
+   * Generates a schema for the given types. May be called concurrently, the docs of every object
+   * type are only resolved once per generator and shared by all schemas, see {@link ObjectDef}.
+   */
   Map<String, Object> generate(
       List<DocRef> types, Map<String, List<Map<String, String>>> discriminators) {
-    Map<String, Object> schema = new LinkedHashMap<>();
-    Map<String, Object> defs = new LinkedHashMap<>();
-    nestedDefs.clear();
-    inProgressDefs.clear();
-    keys.clear();
-
-    schema.put("$schema", "https://json-schema.org/draft/2020-12/schema");
-
-    if (types.size() >= 1) {
-      defs.putAll(generateDefs(types));
-
-      if (!discriminators.isEmpty()) {
-        schema.putAll(generateSwitch(types, discriminators));
-      } else if (defs.size() == 1) {
-        schema.putAll(toRef(defs.keySet().iterator().next()));
-      } else {
-        schema.put("oneOf", toOneOf(defs.keySet()));
-      }
-    }
-
-    defs.putAll(nestedDefs);
-    schema.put("$defs", defs);
-
-    return schema;
+    return new Schema().generate(types, discriminators);
   }
 
-  Map<String, Object> generateDefs(List<DocRef> types) {
-    Map<String, Object> defs = new LinkedHashMap<>();
-
-    types.stream()
-        .map(type -> Map.entry(toKey(type), generateObject(type)))
-        .forEach(entry -> defs.put(entry.getKey(), entry.getValue()));
-
-    return defs;
+  private ObjectDef getObjectDef(DocRef type) {
+    return objectDefs.computeIfAbsent(type, this::compileObject);
   }
 
-  Map<String, Object> generateSwitch(
-      List<DocRef> types, Map<String, List<Map<String, String>>> discriminators) {
-    Map<String, Object> sw = new LinkedHashMap<>();
-    Map<String, Map<String, Set<String>>> props = new LinkedHashMap<>();
-    Set<String> required = new HashSet<>();
-    List<Map<String, Object>> anyOf = new ArrayList<>();
-    Map<String, Map<String, Set<String>>> anyOfProps = new LinkedHashMap<>();
-    List<Map<String, Object>> allOf = new ArrayList<>();
-
-    sw.put("type", "object");
-    sw.put("properties", props);
-    sw.put("required", required);
-    if (discriminators.values().stream()
-        .flatMap(discSets -> discSets.stream().flatMap(discSet -> discSet.keySet().stream()))
-        .anyMatch(key -> key.contains("|"))) {
-      sw.put("anyOf", anyOf);
-    }
-    sw.put("allOf", allOf);
-
-    types.forEach(
-        type -> {
-          discriminators
-              .getOrDefault(type.getType().qualifiedName, List.of())
-              .forEach(
-                  discSet -> {
-                    Map<String, Object> ifProps = new LinkedHashMap<>();
-
-                    discSet.forEach(
-                        (key, val) -> {
-                          if (key.contains("|")) {
-                            anyOfProps
-                                .computeIfAbsent(
-                                    key.substring(0, key.indexOf("|")),
-                                    (k) -> ImmutableMap.of("enum", new LinkedHashSet<>()))
-                                .get("enum")
-                                .add(val);
-                            ifProps.put(
-                                key.substring(0, key.indexOf("|")), ImmutableMap.of("const", val));
-                          } else {
-                            props
-                                .computeIfAbsent(
-                                    key, (k) -> ImmutableMap.of("enum", new LinkedHashSet<>()))
-                                .get("enum")
-                                .add(val);
-                            required.add(key);
-                            ifProps.put(key, ImmutableMap.of("const", val));
-                          }
-                        });
+  private ObjectDef compileObject(DocRef type) {
+    List<PropertyDef> properties = new ArrayList<>();
 
-                    allOf.add(
-                        ImmutableMap.of(
-                            "if",
-                                ImmutableMap.of(
-                                    "properties", ifProps, "required", ifProps.keySet()),
-                            "then", ImmutableMap.of("$ref", "#/$defs/" + toKey(type))));
-                  });
-        });
-
-    anyOfProps.forEach(
-        (key, val) -> {
-          if (props.containsKey(key)) {
-            Set<String> enumValues =
-                Stream.concat(
-                        props.get(key).values().stream().flatMap(Collection::stream),
-                        val.values().stream().flatMap(Collection::stream))
-                    .collect(Collectors.toSet());
-            anyOf.add(
-                ImmutableMap.of(
-                    "properties",
-                    ImmutableMap.of(key, ImmutableMap.of("enum", enumValues)),
-                    "required",
-                    Set.of(key)));
-
-            props.remove(key);
-            required.remove(key);
-          } else {
-            anyOf.add(Map.of("properties", ImmutableMap.of(key, val), "required", Set.of(key)));
-          }
-        });
-
-    return sw;
-  }
-
-  Map<String, Object> generateObject(DocRef type) {
-    return generateObject(type, ImmutableMap.of());
-  }
-
-  Map<String, Object> generateObject(DocRef type, Map<String, List<String>> discriminators) {
-    Map<String, Object> object = new LinkedHashMap<>();
-    Map<String, Object> properties = new LinkedHashMap<>();
-    Set<String> required = new LinkedHashSet<>();
-
-    resolveRowSteps(
-            docs, type, List.of(new DocStep(Step.JSON_PROPERTIES, List.of("skipDocIgnore"))))
-        .filter(DocRef::isMethod)
-        .forEach(
-            prop -> {
-              Entry<String, Map<String, Object>> property =
-                  generateProp(docs, prop, prop.getMethod().get(), type.getType().qualifiedName);
-
-              // TODO: move into generateProp
-              if (discriminators.containsKey(property.getKey())) {
-                List<String> discriminator = discriminators.get(property.getKey());
-                if (discriminator.size() == 1) {
-                  property.getValue().put("const", discriminator.get(0));
-                } else if (discriminator.size() > 1) {
-                  property.getValue().put("enum", new HashSet<>(discriminator));
-                }
-              }
-
-              properties.put(property.getKey(), property.getValue());
-            });
-
-    object.put("title", type.getType().getName().replace("Immutable", ""));
-
-    DocRef descriptionType =
-        Objects.nonNull(type.getType().superClass)
-            ? docs.findTypeRef(type.getType().superClass.qualifiedName)
-            : type.getType().hasInterfaces()
-                ? docs.findTypeRef(type.getType().interfaces.get(0).qualifiedName)
-                : type;
-    resolveColumnSteps(docs, descriptionType, List.of(new DocStep(Step.TAG, List.of("{@body}"))))
-        .ifPresent(description -> object.put("description", description));
-
-    object.put("type", "object");
-    object.put("properties", properties);
-    if (!required.isEmpty()) {
-      object.put("required", required);
+    try {
+      resolveRowSteps(docs, type, PROPERTIES)
+          .filter(DocRef::isMethod)
+          .forEach(
+              prop ->
+                  properties.add(
+                      compileProp(
+                          docs, prop, prop.getMethod().get(), type.getType().qualifiedName)));
+
+      String title = type.getType().getName().replace("Immutable", "");
+
+      DocRef descriptionType =
+          Objects.nonNull(type.getType().superClass)
+              ? docs.findTypeRef(type.getType().superClass.qualifiedName)
+              : type.getType().hasInterfaces()
+                  ? docs.findTypeRef(type.getType().interfaces.get(0).qualifiedName)
+                  : type;
+      Optional<String> description = resolveColumnSteps(docs, descriptionType, BODY);
+
+      return new ObjectDef(properties, title, description, null);
+    } catch (RuntimeException e) {
+      // the nested definitions of the preceding properties are still generated
+      return new ObjectDef(properties, null, Optional.empty(), e);
     }
-    object.put("additionalProperties", false);
-
-    return object;
   }
 
-  Map.Entry<String, Map<String, Object>> generateProp(
-      Docs docs, DocRef prop, MethodDocs method, String typeQN) {
-    String name =
-        resolveColumnSteps(docs, prop, List.of(new DocStep(Step.JSON_NAME))).orElseThrow();
+  private PropertyDef compileProp(Docs docs, DocRef prop, MethodDocs method, String typeQN) {
+    String name = resolveColumnSteps(docs, prop, JSON_NAME).orElseThrow();
 
     Map<String, Object> def = new LinkedHashMap<>();
 
     def.put("title", name);
 
-    resolveColumnSteps(docs, prop, List.of(new DocStep(Step.TAG, List.of("{@body}"))))
+    resolveColumnSteps(docs, prop, BODY)
         .ifPresent(description -> def.put("description", description));
 
-    String typeJson =
-        resolveColumnSteps(docs, prop, List.of(new DocStep(Step.JSON_TYPE))).orElseThrow();
+    String typeJson = resolveColumnSteps(docs, prop, JSON_TYPE).orElseThrow();
 
     if (!Objects.equals(typeJson, "array")) {
       def.putAll(getSimpleType(typeJson));
@@ -224,9 +114,33 @@ public class JsonSchemaGenerator {
       def.put("deprecated", true);
     }
 
-    def.putAll(getNestedDefs(method.returnType, typeJson, typeQN + "." + method.qualifiedName));
+    return new PropertyDef(
+        name,
+        def,
+        compileNested(method.returnType, typeJson),
+        typeQN + "." + method.qualifiedName);
+  }
+
+  private NestedDef compileNested(String type, String typeJson) {
+    if (Objects.equals(typeJson, "object")) {
+      if (type.contains("Map<")) {
+        String mapType = docs.getJavaType(type).getMapValueType();
+        String mapTypeJson = StepResolver.getJsonType(mapType, docs);
+
+        return new NestedDef(
+            NestedDef.Kind.MAP, type, compileNested(mapType, mapTypeJson), mapTypeJson);
+      } else if (!type.contains("java.lang.Object")) {
+        return new NestedDef(NestedDef.Kind.REF, type, null, null);
+      }
+    } else if (Objects.equals(typeJson, "array")) {
+      String arrayType = docs.getJavaType(type).getItemType();
+      String arrayTypeJson = StepResolver.getJsonType(arrayType, docs);
+
+      return new NestedDef(
+          NestedDef.Kind.ARRAY, type, compileNested(arrayType, arrayTypeJson), arrayTypeJson);
+    }
 
-    return Map.entry(name, def);
+    return new NestedDef(NestedDef.Kind.NONE, type, null, null);
   }
 
   private Map<String, Object> getSimpleType(String typeJson) {
@@ -255,50 +169,6 @@ public class JsonSchemaGenerator {
     }
   }
 
-  private Map<String, Object> getNestedDefs(String type, String typeJson, String context) {
-    Map<String, Object> def = new LinkedHashMap<>();
-
-    if (Objects.equals(typeJson, "object")) {
-      if (type.contains("Map<")) {
-        String mapType = cleanMap(type);
-        String mapTypeJson = StepResolver.getJsonType(mapType, docs);
-        Map<String, Object> entries = new LinkedHashMap<>();
-
-        entries.putAll(getNestedDefs(mapType, mapTypeJson, context));
-        if (entries.isEmpty()) {
-          entries.put("type", mapTypeJson);
-        }
-
-        def.put("additionalProperties", entries);
-      } else if (!type.contains("java.lang.Object")) {
-        getRefForType(type, context).ifPresent(ref -> def.put("$ref", ref));
-      }
-    } else if (Objects.equals(typeJson, "array")) {
-      String arrayType = cleanArray(type);
-      String arrayTypeJson = StepResolver.getJsonType(arrayType, docs);
-      Map<String, Object> items = new LinkedHashMap<>();
-
-      items.putAll(getNestedDefs(arrayType, arrayTypeJson, context));
-      if (items.isEmpty()) {
-        items.putAll(getSimpleType(arrayTypeJson));
-      }
-      // allow single values instead of list like yaml parser
-      List<Map<String, Object>> allOf = new ArrayList<>();
-      allOf.add(
-          ImmutableMap.of(
-              "if", ImmutableMap.of("type", "array"), "then", ImmutableMap.of("items", items)));
-      allOf.add(ImmutableMap.of("if", ImmutableMap.of("type", "object"), "then", items));
-
-      def.put("allOf", allOf);
-    }
-
-    return def;
-  }
-
-  private Optional<String> getRefForType(String type, String context) {
-    return getRefForType(type, context, ImmutableMap.of());
-  }
-
   private boolean hasJsonTypes(DocRef typeRef) {
     return typeRef.hasAnnotation("com.fasterxml.jackson.annotation.JsonTypeInfo")
         && typeRef
@@ -334,264 +204,604 @@ public class JsonSchemaGenerator {
     return Map.entry(property, aliases);
   }
 
-  private Map<String, List<Map<String, String>>> getJsonTypes(DocRef typeRef, String context) {
-    Map<String, List<Map<String, String>>> discriminators = new LinkedHashMap<>();
+  /**
+   * The state of a single schema. Which nested definitions are included, in which order and with
+   * which keys depends on the traversal, everything else comes from the shared {@link ObjectDef}s.
+   */
+  private class Schema {
+    private final Map<String, Object> nestedDefs;
+    private final Set<String> inProgressDefs;
+    private final Map<String, String> keys;
+
+    Schema() {
+      this.nestedDefs = new LinkedHashMap<>();
+      this.inProgressDefs = new HashSet<>();
+      this.keys = new LinkedHashMap<>();
+    }
 
-    if (!hasJsonTypes(typeRef)) {
-      return discriminators;
+    private Map<String, Object> generate(
+        List<DocRef> types, Map<String, List<Map<String, String>>> discriminators) {
+      Map<String, Object> schema = new LinkedHashMap<>();
+      Map<String, Object> defs = new LinkedHashMap<>();
+
+      schema.put("$schema", SCHEMA);
+
+      if (types.size() >= 1) {
+        defs.putAll(generateDefs(types));
+
+        if (!discriminators.isEmpty()) {
+          schema.putAll(generateSwitch(types, discriminators));
+        } else if (defs.size() == 1) {
+          schema.putAll(toRef(defs.keySet().iterator().next()));
+        } else {
+          schema.put("oneOf", toOneOf(defs.keySet()));
+        }
+      }
+
+      defs.putAll(nestedDefs);
+      schema.put("$defs", defs);
+
+      return schema;
     }
 
-    if (typeRef.hasAnnotation("com.fasterxml.jackson.databind.annotation.JsonTypeIdResolver")) {
-      return getJsonTypesDynamic(typeRef, context);
+    Map<String, Object> generateDefs(List<DocRef> types) {
+      Map<String, Object> defs = new LinkedHashMap<>();
+
+      types.stream()
+          .map(type -> Map.entry(toKey(type), generateObject(type)))
+          .forEach(entry -> defs.put(entry.getKey(), entry.getValue()));
+
+      return defs;
     }
 
-    Entry<String, List<String>> properties = getJsonTypeProperties(typeRef);
-
-    typeRef
-        .getType()
-        .getAnnotation("com.fasterxml.jackson.annotation.JsonSubTypes")
-        .flatMap(a -> a.getAttributeAsJson("value", false))
-        .map(t -> (List<Map<String, Object>>) gson.fromJson(t, LIST_MAP))
-        .orElse(List.of())
-        .forEach(
-            s -> {
-              String subType =
-                  ((String) s.get("value")).endsWith(".class")
-                      ? ((String) s.get("value")).replaceFirst(".class$", "")
-                      : (String) s.get("value");
-              String value = (String) s.get("name");
-
-              List<String> propertyValues = new ArrayList<>();
-              List<Map<String, String>> discSets =
-                  discriminators.computeIfAbsent(subType, k -> new ArrayList<>());
-
-              propertyValues.add(value);
-              discSets.add(
-                  Map.of(
-                      properties.getKey() + (properties.getValue().isEmpty() ? "" : "|"), value));
-              properties
-                  .getValue()
-                  .forEach(property -> discSets.add(ImmutableMap.of(property + "|", value)));
-
-              Map<String, List<String>> discSet = new LinkedHashMap<>();
-              discSet.put(properties.getKey(), propertyValues);
-              properties.getValue().forEach(property -> discSet.put(property, propertyValues));
-
-              getRefForType(subType, context, discSet);
-            });
-
-    return discriminators;
-  }
+    Map<String, Object> generateSwitch(
+        List<DocRef> types, Map<String, List<Map<String, String>>> discriminators) {
+      Map<String, Object> sw = new LinkedHashMap<>();
+      Map<String, Map<String, Set<String>>> props = new LinkedHashMap<>();
+      Set<String> required = new HashSet<>();
+      List<Map<String, Object>> anyOf = new ArrayList<>();
+      Map<String, Map<String, Set<String>>> anyOfProps = new LinkedHashMap<>();
+      List<Map<String, Object>> allOf = new ArrayList<>();
 
-  private Map<String, List<Map<String, String>>> getJsonTypesDynamic(
-      DocRef typeRef, String context) {
-    Map<String, List<Map<String, String>>> discriminators = new LinkedHashMap<>();
+      sw.put("type", "object");
+      sw.put("properties", props);
+      sw.put("required", required);
+      if (discriminators.values().stream()
+          .flatMap(discSets -> discSets.stream().flatMap(discSet -> discSet.keySet().stream()))
+          .anyMatch(key -> key.contains("|"))) {
+        sw.put("anyOf", anyOf);
+      }
+      sw.put("allOf", allOf);
+
+      types.forEach(
+          type -> {
+            discriminators
+                .getOrDefault(type.getType().qualifiedName, List.of())
+                .forEach(
+                    discSet -> {
+                      Map<String, Object> ifProps = new LinkedHashMap<>();
+
+                      discSet.forEach(
+                          (key, val) -> {
+                            if (key.contains("|")) {
+                              anyOfProps
+                                  .computeIfAbsent(
+                                      key.substring(0, key.indexOf("|")),
+                                      (k) -> ImmutableMap.of("enum", new LinkedHashSet<>()))
+                                  .get("enum")
+                                  .add(val);
+                              ifProps.put(
+                                  key.substring(0, key.indexOf("|")),
+                                  ImmutableMap.of("const", val));
+                            } else {
+                              props
+                                  .computeIfAbsent(
+                                      key, (k) -> ImmutableMap.of("enum", new LinkedHashSet<>()))
+                                  .get("enum")
+                                  .add(val);
+                              required.add(key);
+                              ifProps.put(key, ImmutableMap.of("const", val));
+                            }
+                          });
+
+                      allOf.add(
+                          ImmutableMap.of(
+                              "if",
+                                  ImmutableMap.of(
+                                      "properties", ifProps, "required", ifProps.keySet()),
+                              "then", ImmutableMap.of("$ref", DEFS_REF + toKey(type))));
+                    });
+          });
+
+      anyOfProps.forEach(
+          (key, val) -> {
+            if (props.containsKey(key)) {
+              Set<String> enumValues =
+                  Stream.concat(
+                          props.get(key).values().stream().flatMap(Collection::stream),
+                          val.values().stream().flatMap(Collection::stream))
+                      .collect(Collectors.toSet());
+              anyOf.add(
+                  ImmutableMap.of(
+                      "properties",
+                      ImmutableMap.of(key, ImmutableMap.of("enum", enumValues)),
+                      "required",
+                      Set.of(key)));
+
+              props.remove(key);
+              required.remove(key);
+            } else {
+              anyOf.add(Map.of("properties", ImmutableMap.of(key, val), "required", Set.of(key)));
+            }
+          });
+
+      return sw;
+    }
+
+    private Map<String, Object> generateObject(DocRef type) {
+      return generateObject(type, ImmutableMap.of());
+    }
+
+    private Map<String, Object> generateObject(
+        DocRef type, Map<String, List<String>> discriminators) {
+      ObjectDef objectDef = getObjectDef(type);
+      Map<String, Object> object = new LinkedHashMap<>();
+      Map<String, Object> properties = new LinkedHashMap<>();
+      Set<String> required = new LinkedHashSet<>();
+
+      objectDef.properties.forEach(
+          property -> {
+            Map<String, Object> def = new LinkedHashMap<>(property.def);
+            def.putAll(getNestedDefs(property.nested, property.context));
+
+            // TODO: move into generateProp
+            if (discriminators.containsKey(property.name)) {
+              List<String> discriminator = discriminators.get(property.name);
+              if (discriminator.size() == 1) {
+                def.put("const", discriminator.get(0));
+              } else if (discriminator.size() > 1) {
+                def.put("enum", new HashSet<>(discriminator));
+              }
+            }
+
+            properties.put(property.name, def);
+          });
+
+      if (Objects.nonNull(objectDef.failure)) {
+        throw objectDef.failure;
+      }
+
+      object.put("title", objectDef.title);
+      objectDef.description.ifPresent(description -> object.put("description", description));
+      object.put("type", "object");
+      object.put("properties", properties);
+      if (!required.isEmpty()) {
+        object.put("required", required);
+      }
+      object.put("additionalProperties", false);
+
+      return object;
+    }
+
+    private Map<String, Object> getNestedDefs(NestedDef nested, String context) {
+      Map<String, Object> def = new LinkedHashMap<>();
+
+      if (nested.kind == NestedDef.Kind.MAP) {
+        Map<String, Object> entries = new LinkedHashMap<>();
+
+        entries.putAll(getNestedDefs(nested.items, context));
+        if (entries.isEmpty()) {
+          entries.put("type", nested.itemsJsonType);
+        }
+
+        def.put("additionalProperties", entries);
+      } else if (nested.kind == NestedDef.Kind.REF) {
+        getRefForType(nested.type, context).ifPresent(ref -> def.put("$ref", ref));
+      } else if (nested.kind == NestedDef.Kind.ARRAY) {
+        Map<String, Object> items = new LinkedHashMap<>();
+
+        items.putAll(getNestedDefs(nested.items, context));
+        if (items.isEmpty()) {
+          items.putAll(getSimpleType(nested.itemsJsonType));
+        }
+        // allow single values instead of list like yaml parser
+        List<Map<String, Object>> allOf = new ArrayList<>();
+        allOf.add(
+            ImmutableMap.of(
+                "if", ImmutableMap.of("type", "array"), "then", ImmutableMap.of("items", items)));
+        allOf.add(ImmutableMap.of("if", ImmutableMap.of("type", "object"), "then", items));
+
+        def.put("allOf", allOf);
+      }
+
+      return def;
+    }
+
+    private Optional<String> getRefForType(String type, String context) {
+      return getRefForType(type, context, ImmutableMap.of());
+    }
+
+    private Map<String, List<Map<String, String>>> getJsonTypes(DocRef typeRef, String context) {
+      Map<String, List<Map<String, String>>> discriminators = new LinkedHashMap<>();
+
+      if (!hasJsonTypes(typeRef)) {
+        return discriminators;
+      }
+
+      if (typeRef.hasAnnotation("com.fasterxml.jackson.databind.annotation.JsonTypeIdResolver")) {
+        return getJsonTypesDynamic(typeRef, context);
+      }
+
+      Entry<String, List<String>> properties = getJsonTypeProperties(typeRef);
+
+      typeRef
+          .getType()
+          .getAnnotation("com.fasterxml.jackson.annotation.JsonSubTypes")
+          .flatMap(a -> a.getAttributeAsJson("value", false))
+          .map(t -> (List<Map<String, Object>>) gson.fromJson(t, LIST_MAP))
+          .orElse(List.of())
+          .forEach(
+              s -> {
+                String subType =
+                    ((String) s.get("value")).endsWith(".class")
+                        ? ((String) s.get("value")).replaceFirst(".class$", "")
+                        : (String) s.get("value");
+                String value = (String) s.get("name");
+
+                List<String> propertyValues = new ArrayList<>();
+                List<Map<String, String>> discSets =
+                    discriminators.computeIfAbsent(subType, k -> new ArrayList<>());
+
+                propertyValues.add(value);
+                discSets.add(
+                    Map.of(
+                        properties.getKey() + (properties.getValue().isEmpty() ? "" : "|"), value));
+                properties
+                    .getValue()
+                    .forEach(property -> discSets.add(ImmutableMap.of(property + "|", value)));
+
+                Map<String, List<String>> discSet = new LinkedHashMap<>();
+                discSet.put(properties.getKey(), propertyValues);
+                properties.getValue().forEach(property -> discSet.put(property, propertyValues));
+
+                getRefForType(subType, context, discSet);
+              });
 
-    if (!hasJsonTypes(typeRef)
-        || !typeRef.hasAnnotation("com.fasterxml.jackson.databind.annotation.JsonTypeIdResolver")) {
       return discriminators;
     }
 
-    Entry<String, List<String>> properties = getJsonTypeProperties(typeRef);
-
-    resolveRowSteps(docs, typeRef, List.of(new DocStep(Step.IMPLEMENTATIONS)))
-        .filter(subType -> subType.hasAnnotation("de.ii.xtraplatform.docs.JsonDynamicSubType"))
-        .forEach(
-            subType -> {
-              AnnotationDocs ann =
-                  subType
-                      .getType()
-                      .getAnnotation("de.ii.xtraplatform.docs.JsonDynamicSubType")
-                      .get();
-              List<String> propertyValues = new ArrayList<>();
-              List<Map<String, String>> discSets =
-                  discriminators.computeIfAbsent(
-                      subType.getType().qualifiedName, k -> new ArrayList<>());
-
-              ann.getAttribute("id")
-                  .ifPresent(
-                      id -> {
-                        propertyValues.add(id);
-                        discSets.add(
-                            Map.of(
-                                properties.getKey() + (properties.getValue().isEmpty() ? "" : "|"),
-                                id));
-                        properties
-                            .getValue()
-                            .forEach(property -> discSets.add(ImmutableMap.of(property + "|", id)));
-                      });
-
-              ann.getAttribute("aliases")
-                  .ifPresent(
-                      aliases ->
-                          Arrays.stream(aliases.split(","))
-                              .map(alias -> alias.trim().replaceAll("\"", ""))
-                              .forEach(
-                                  alias -> {
-                                    propertyValues.add(alias);
-                                    discSets.add(
-                                        ImmutableMap.of(
-                                            properties.getKey()
-                                                + (properties.getValue().isEmpty() ? "" : "|"),
-                                            alias));
-                                    properties
-                                        .getValue()
-                                        .forEach(
-                                            property ->
-                                                discSets.add(
-                                                    ImmutableMap.of(property + "|", alias)));
-                                  }));
-
-              Map<String, List<String>> discSet = new LinkedHashMap<>();
-              discSet.put(properties.getKey(), propertyValues);
-              properties.getValue().forEach(property -> discSet.put(property, propertyValues));
-
-              getRefForType(subType.getType().qualifiedName, context, discSet);
-            });
-
-    return discriminators;
-  }
+    private Map<String, List<Map<String, String>>> getJsonTypesDynamic(
+        DocRef typeRef, String context) {
+      Map<String, List<Map<String, String>>> discriminators = new LinkedHashMap<>();
 
-  private Optional<String> getRefForType(
-      String type, String context, Map<String, List<String>> discriminators) {
-    String ref;
-    try {
-      String returnType = clean(type);
-      DocRef typeRef = docs.findTypeRef(returnType);
-      ref = toKey(typeRef);
-
-      if (!nestedDefs.containsKey(ref) && !inProgressDefs.contains(ref)) {
-        inProgressDefs.add(ref);
-        nestedDefs.put(ref, generateObject(typeRef, discriminators));
-        inProgressDefs.remove(ref);
+      if (!hasJsonTypes(typeRef)
+          || !typeRef.hasAnnotation(
+              "com.fasterxml.jackson.databind.annotation.JsonTypeIdResolver")) {
+        return discriminators;
       }
-    } catch (Throwable e) {
+
+      Entry<String, List<String>> properties = getJsonTypeProperties(typeRef);
+
+      resolveRowSteps(docs, typeRef, IMPLEMENTATIONS)
+          .filter(subType -> subType.hasAnnotation("de.ii.xtraplatform.docs.JsonDynamicSubType"))
+          .forEach(
+              subType -> {
+                AnnotationDocs ann =
+                    subType
+                        .getType()
+                        .getAnnotation("de.ii.xtraplatform.docs.JsonDynamicSubType")
+                        .get();
+                List<String> propertyValues = new ArrayList<>();
+                List<Map<String, String>> discSets =
+                    discriminators.computeIfAbsent(
+                        subType.getType().qualifiedName, k -> new ArrayList<>());
+
+                ann.getAttribute("id")
+                    .ifPresent(
+                        id -> {
+                          propertyValues.add(id);
+                          discSets.add(
+                              Map.of(
+                                  properties.getKey()
+                                      + (properties.getValue().isEmpty() ? "" : "|"),
+                                  id));
+                          properties
+                              .getValue()
+                              .forEach(
+                                  property -> discSets.add(ImmutableMap.of(property + "|", id)));
+                        });
+
+                ann.getAttribute("aliases")
+                    .ifPresent(
+                        aliases ->
+                            Arrays.stream(aliases.split(","))
+                                .map(alias -> alias.trim().replaceAll("\"", ""))
+                                .forEach(
+                                    alias -> {
+                                      propertyValues.add(alias);
+                                      discSets.add(
+                                          ImmutableMap.of(
+                                              properties.getKey()
+                                                  + (properties.getValue().isEmpty() ? "" : "|"),
+                                              alias));
+                                      properties
+                                          .getValue()
+                                          .forEach(
+                                              property ->
+                                                  discSets.add(
+                                                      ImmutableMap.of(property + "|", alias)));
+                                    }));
+
+                Map<String, List<String>> discSet = new LinkedHashMap<>();
+                discSet.put(properties.getKey(), propertyValues);
+                properties.getValue().forEach(property -> discSet.put(property, propertyValues));
+
+                getRefForType(subType.getType().qualifiedName, context, discSet);
+              });
+
+      return discriminators;
+    }
+
+    private Optional<String> getRefForType(
+        String type, String context, Map<String, List<String>> discriminators) {
+      String ref;
       try {
-        String returnType = clean(type, false);
+        String returnType = docs.getJavaType(type).getDefType(true);
         DocRef typeRef = docs.findTypeRef(returnType);
         ref = toKey(typeRef);
 
-        if (!nestedDefs.containsKey(ref)) {
-          if (hasJsonTypes(typeRef)) {
-            Map<String, List<Map<String, String>>> discriminators2 = getJsonTypes(typeRef, context);
-            List<DocRef> types =
-                discriminators2.keySet().stream()
-                    .map(docs::findTypeRef)
-                    .collect(Collectors.toList());
-
-            // TODO: use allOf/if/then instead of anyOf
-            nestedDefs.put(ref, generateSwitch(types, discriminators2));
-          } else {
-            System.out.println("WARN type for " + context + " not found: " + type);
-            System.out.println(
-                "WARN no json subtypes found for super type " + typeRef.getType().qualifiedName);
-
-            return Optional.empty();
-          }
+        if (!nestedDefs.containsKey(ref) && !inProgressDefs.contains(ref)) {
+          inProgressDefs.add(ref);
+          nestedDefs.put(ref, generateObject(typeRef, discriminators));
+          inProgressDefs.remove(ref);
         }
-      } catch (Throwable e2) {
-        System.out.println("WARN type for " + context + " not found: " + type);
+      } catch (Throwable e) {
+        try {
+          String returnType = docs.getJavaType(type).getDefType(false);
+          DocRef typeRef = docs.findTypeRef(returnType);
+          ref = toKey(typeRef);
+
+          if (!nestedDefs.containsKey(ref)) {
+            if (hasJsonTypes(typeRef)) {
+              Map<String, List<Map<String, String>>> discriminators2 =
+                  getJsonTypes(typeRef, context);
+              List<DocRef> types =
+                  discriminators2.keySet().stream()
+                      .map(docs::findTypeRef)
+                      .collect(Collectors.toList());
+
+              // TODO: use allOf/if/then instead of anyOf
+              nestedDefs.put(ref, generateSwitch(types, discriminators2));
+            } else {
+              System.out.println("WARN type for " + context + " not found: " + type);
+              System.out.println(
+                  "WARN no json subtypes found for super type " + typeRef.getType().qualifiedName);
+
+              return Optional.empty();
+            }
+          }
+        } catch (Throwable e2) {
+          System.out.println("WARN type for " + context + " not found: " + type);
 
-        return Optional.empty();
+          return Optional.empty();
+        }
       }
+
+      return Optional.of(DEFS_REF + ref);
     }
 
-    return Optional.of("#/$defs/" + ref);
+    private String toKey(DocRef type) {
+      return keys.computeIfAbsent(
+          docs.getJavaType(type.getType().qualifiedName).getDefType(true),
+          k -> {
+            if (qualifiedKeys) {
+              return k.replaceFirst("\\.Immutable([^.]+)$", ".$1");
+            }
+            String key = type.getType().getName().replaceFirst("^Immutable", "");
+            String key2 = key;
+            int i = 2;
+            while (keys.containsValue(key2)) {
+              System.out.println("DUPLICATE " + k + " - " + keys);
+              key2 = String.format("%s_%d", key, i++);
+            }
+            return key2;
+          });
+    }
   }
 
-  static String clean(String type) {
-    return clean(type, true);
+  static List<Map<String, String>> toOneOf(Collection<String> defs) {
+    return defs.stream().map(JsonSchemaGenerator::toRef).collect(Collectors.toList());
   }
 
-  static String clean(String type, boolean immutable) {
-    if (!type.contains(".")) {
-      return type;
-    }
+  static Map<String, String> toRef(String ref) {
+    return ImmutableMap.of("$ref", ref.startsWith(DEFS_REF) ? ref : DEFS_REF + ref);
+  }
 
-    String cleaned =
-        type.startsWith("java.util.Optional<")
-            ? type.replaceFirst("java.util.Optional<(.*?)>", "$1")
-            : type;
+  /**
+   * Splits a schema into a root schema and one fragment per definition, to be stored as {@code
+   * <key>.json} in {@link #FRAGMENTS_DIR} next to the root schema. All refs to fragments are
+   * rewritten to relative file refs. With qualified keys the fragments of different schemas can be
+   * stored in the same directory.
+   *
+   * <p>A definition may still differ between schemas, e.g. the discriminator values of a sub type
+   * depend on the schema it is reached from. Definitions that are already shared with a different
+   * content, and all definitions that reference them, stay in the {@code $defs} of the root schema.
+   *
+   * @param shared the fragments written for the preceding schemas
+   * @return the root schema with key {@code null}, followed by the new fragments
+   */
+  static Map<String, Map<String, Object>> toFragments(
+      Map<String, Object> schema, Map<String, Map<String, Object>> shared) {
+    Map<String, Object> root = new LinkedHashMap<>(schema);
+    Object defs = root.remove("$defs");
+    Map<String, Map<?, ?>> definitions = new LinkedHashMap<>();
+    Map<String, Map<String, Object>> candidates = new LinkedHashMap<>();
+
+    if (defs instanceof Map) {
+      ((Map<?, ?>) defs).forEach((key, def) -> definitions.put((String) key, (Map<?, ?>) def));
+    }
 
-    String pkg = cleaned.substring(0, cleaned.lastIndexOf("."));
-    String name = cleaned.substring(cleaned.lastIndexOf(".") + 1);
-    String parentPkg = pkg.substring(0, pkg.lastIndexOf("."));
-    String parentName = pkg.substring(pkg.lastIndexOf(".") + 1);
+    Set<String> inlined = new LinkedHashSet<>();
+    definitions.forEach(
+        (key, def) -> {
+          Map<String, Object> fragment = new LinkedHashMap<>();
+          fragment.put("$schema", SCHEMA);
+          fragment.putAll(toFileRefs(def, "", Set.of()));
 
-    String cleanedPkg = Character.isUpperCase(parentName.charAt(0)) ? parentPkg : pkg;
-    String prefix = !immutable || name.startsWith("Immutable") ? "." : ".Immutable";
+          candidates.put(key, fragment);
+          if (shared.containsKey(key) && !Objects.equals(shared.get(key), fragment)) {
+            inlined.add(key);
+          }
+        });
 
-    return cleanedPkg + prefix + name;
-  }
+    // the definitions that reference an inlined definition have to be inlined as well
+    boolean changed = !inlined.isEmpty();
+    while (changed) {
+      changed = false;
+      for (Map.Entry<String, Map<?, ?>> entry : definitions.entrySet()) {
+        if (!inlined.contains(entry.getKey()) && referencesAny(entry.getValue(), inlined)) {
+          inlined.add(entry.getKey());
+          changed = true;
+        }
+      }
+    }
 
-  static String cleanArray(String type) {
-    if (type.startsWith("java.util.List<")
-        || type.startsWith("java.util.Set<")
-        || type.startsWith("java.util.Collection<")
-        || type.startsWith("com.google.common.collect.ImmutableList<")
-        || type.startsWith("com.google.common.collect.ImmutableSet<")) {
+    Map<String, Map<String, Object>> fragments = new LinkedHashMap<>();
+    Map<String, Object> rootFragment = toFileRefs(root, FRAGMENTS_DIR + "/", inlined);
 
-      return type.substring(type.indexOf("<") + 1, type.length() - 1);
-    } else if (type.endsWith("[]")) {
-      return type.substring(0, type.length() - 2);
+    if (!inlined.isEmpty()) {
+      Map<String, Object> inlinedDefs = new LinkedHashMap<>();
+      for (String key : inlined) {
+        inlinedDefs.put(key, toFileRefs(definitions.get(key), FRAGMENTS_DIR + "/", inlined));
+      }
+      rootFragment.put("$defs", inlinedDefs);
     }
 
-    return type;
+    fragments.put(null, rootFragment);
+    candidates.forEach(
+        (key, fragment) -> {
+          if (!inlined.contains(key) && !shared.containsKey(key)) {
+            fragments.put(key, fragment);
+          }
+        });
+
+    return fragments;
   }
 
-  static String cleanMap(String type) {
-    if (type.startsWith("java.util.Map<")
-        || type.startsWith("com.google.common.collect.ImmutableMap<")) {
-      return type.substring(type.indexOf(",") + 1, type.length() - 1);
-    } else if (type.startsWith("java.util.Optional<java.util.Map<")) {
-      return type.substring(type.indexOf(",") + 1, type.indexOf(">"));
-    } else if (type.startsWith("de.ii.xtraplatform.entities.domain.maptobuilder.BuildableMap<")) {
-      return type.substring(type.indexOf("<") + 1, type.indexOf(","));
+  private static boolean referencesAny(Object value, Set<String> keys) {
+    if (value instanceof Map) {
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        if (Objects.equals(entry.getKey(), "$ref")) {
+          String ref = (String) entry.getValue();
+          if (ref.startsWith(DEFS_REF) && keys.contains(ref.substring(DEFS_REF.length()))) {
+            return true;
+          }
+        } else if (referencesAny(entry.getValue(), keys)) {
+          return true;
+        }
+      }
+      return false;
     }
+    if (value instanceof Collection) {
+      return ((Collection<?>) value).stream().anyMatch(val -> referencesAny(val, keys));
+    }
+    return false;
+  }
 
-    return type;
+  // refs to the inlined definitions are kept as they are
+  private static Map<String, Object> toFileRefs(
+      Map<?, ?> value, String prefix, Set<String> inlined) {
+    Map<String, Object> map = new LinkedHashMap<>();
+    value.forEach(
+        (key, val) ->
+            map.put(
+                (String) key,
+                Objects.equals(key, "$ref") && isFileRef((String) val, inlined)
+                    ? prefix + ((String) val).substring(DEFS_REF.length()) + ".json"
+                    : toFileRefs(val, prefix, inlined)));
+    return map;
   }
 
-  static List<Map<String, String>> toOneOf(Collection<String> defs) {
-    return defs.stream().map(JsonSchemaGenerator::toRef).collect(Collectors.toList());
+  private static Object toFileRefs(Object value, String prefix, Set<String> inlined) {
+    if (value instanceof Map) {
+      return toFileRefs((Map<?, ?>) value, prefix, inlined);
+    }
+    if (value instanceof Collection) {
+      return ((Collection<?>) value)
+          .stream().map(val -> toFileRefs(val, prefix, inlined)).collect(Collectors.toList());
+    }
+    return value;
   }
 
-  static Map<String, String> toRef(String ref) {
-    return ImmutableMap.of("$ref", ref.startsWith("#/$defs/") ? ref : "#/$defs/" + ref);
+  private static boolean isFileRef(String ref, Set<String> inlined) {
+    return ref.startsWith(DEFS_REF) && !inlined.contains(ref.substring(DEFS_REF.length()));
   }
 
-  private String toKey(DocRef type) {
-    return keys.computeIfAbsent(
-        clean(type.getType().qualifiedName, true),
-        k -> {
-          String key = type.getType().getName().replaceFirst("^Immutable", "");
-          String key2 = key;
-          int i = 2;
-          while (keys.containsValue(key2)) {
-            System.out.println("DUPLICATE " + k + " - " + keys);
-            key2 = String.format("%s_%d", key, i++);
-          }
-          return key2;
-        });
+  static Stream<DocRef> resolveRowSteps(Docs docs, DocRef root, StepResolver.Plan plan) {
+    return plan.resolveRows(docs, root, "en");
   }
 
-  static Stream<DocRef> resolveRowSteps(Docs docs, DocRef root, List<DocStep> steps) {
-    Entry<Class<?>, Stream<?>> result = StepResolver.resolve(docs, root, steps, "en");
+  static Optional<String> resolveColumnSteps(Docs docs, DocRef root, StepResolver.Plan plan) {
+    return plan.resolveColumn(docs, root, "en");
+  }
 
-    if (result.getKey() != DocRef.class) {
-      throw new IllegalArgumentException();
+  /**
+   * An object definition without the refs to nested definitions. Resolving the docs only depends
+   * on the type, so it is done once and shared by all schemas, while the refs are resolved per
+   * {@link Schema}. A failure is rethrown after the nested definitions of the preceding properties
+   * were generated.
+   */
+  private static class ObjectDef {
+    final List<PropertyDef> properties;
+    final String title;
+    final Optional<String> description;
+    final RuntimeException failure;
+
+    ObjectDef(
+        List<PropertyDef> properties,
+        String title,
+        Optional<String> description,
+        RuntimeException failure) {
+      this.properties = properties;
+      this.title = title;
+      this.description = description;
+      this.failure = failure;
     }
-
-    return result.getValue().map(DocRef.class::cast);
   }
 
-  static Optional<String> resolveColumnSteps(Docs docs, DocRef root, List<DocStep> steps) {
-    Entry<Class<?>, Stream<?>> result = StepResolver.resolve(docs, root, steps, "en");
+  private static class PropertyDef {
+    final String name;
+    final Map<String, Object> def;
+    final NestedDef nested;
+    final String context;
+
+    PropertyDef(String name, Map<String, Object> def, NestedDef nested, String context) {
+      this.name = name;
+      this.def = def;
+      this.nested = nested;
+      this.context = context;
+    }
+  }
 
-    if (result.getKey() != String.class) {
-      throw new IllegalArgumentException();
+  // the nested definitions of a property, i.e. map values, array items or a ref to an object type
+  private static class NestedDef {
+    enum Kind {
+      NONE,
+      MAP,
+      ARRAY,
+      REF
     }
 
-    return result.getValue().map(String.class::cast).findFirst();
+    final Kind kind;
+    final String type;
+    final NestedDef items;
+    final String itemsJsonType;
+
+    NestedDef(Kind kind, String type, NestedDef items, String itemsJsonType) {
+      this.kind = kind;
+      this.type = type;
+      this.items = items;
+      this.itemsJsonType = itemsJsonType;
+    }
   }
 }
@@ -3,11 +3,17 @@ package de.interactive_instruments.xtraplatform.docs
 import com.google.gson.Gson
 import com.google.gson.GsonBuilder
 import com.google.gson.reflect.TypeToken
+import com.google.gson.stream.JsonWriter
 import org.gradle.api.DefaultTask
 import org.gradle.api.file.FileCollection
+import org.gradle.api.provider.Provider
 import org.gradle.api.tasks.*
 
 import java.lang.reflect.Type
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 
 @CacheableTask
 class JsonSchemaTask extends DefaultTask {
@@ -15,10 +21,16 @@ class JsonSchemaTask extends DefaultTask {
     private FileCollection sourceFiles = project.files(project.parent.configurations.layerDocs.resolvedConfiguration.firstLevelModuleDependencies.collectMany { it.moduleArtifacts }.collect { it.file });
     private File outputDir = new File(project.projectDir, "src/main/resources/json-schema")
     private String docsName
+    private boolean fragments = false
+    private final Provider<DocsService> docsService = DocsService.register(project)
     private static final Gson gson = new GsonBuilder()
             .setPrettyPrinting()
             .create()
 
+    JsonSchemaTask() {
+        usesService(docsService)
+    }
+
     @SkipWhenEmpty
     @InputFiles
     @PathSensitive(PathSensitivity.NONE)
@@ -39,6 +51,20 @@ class JsonSchemaTask extends DefaultTask {
         this.docsName = docsName;
     }
 
+    @Input
+    boolean getFragments() {
+        return fragments
+    }
+
+    /**
+     * Write every definition once as a fragment file referenced via relative $ref instead of
+     * inlining all definitions into the schema of every entity type. Definitions that differ
+     * between schemas are still inlined, see {@link JsonSchemaGenerator#toFragments}.
+     */
+    void fragments(boolean fragments) {
+        this.fragments = fragments;
+    }
+
     @OutputDirectory
     File getOutputDir() {
         return new File(outputDir, docsName)
@@ -49,7 +75,10 @@ class JsonSchemaTask extends DefaultTask {
         println new Date()
 
         Docs docs = loadDocs()
-        JsonSchemaGenerator generator = new JsonSchemaGenerator(docs, gson)
+        boolean fragments = getFragments()
+        JsonSchemaGenerator generator = new JsonSchemaGenerator(docs, gson, fragments)
+        List<Callable<Void>> jobs = []
+        Map<String, Map<String, Object>> schemas = new ConcurrentHashMap<>()
 
         Map<String, List<DocRef>> refs = docs.findTypeByInterface("de.ii.xtraplatform.entities.domain.PersistentEntity")
                 .findAll { it.getType().getAnnotation("de.ii.xtraplatform.entities.domain.Entity").map { it.getAttribute("type") }.isPresent() }
@@ -110,32 +139,72 @@ class JsonSchemaTask extends DefaultTask {
                 println "- " + key + ": " + value
             }
 
-            def schema = generator.generate(dataClasses, discriminators)
+            jobs.add({
+                def schema = generator.generate(dataClasses, discriminators)
+
+                if (fragments) {
+                    schemas.put(ref.key, schema)
+                } else {
+                    writeSchema(schema, ref.key)
+                }
+                return null
+            } as Callable<Void>)
+        }
+
+        // the generator shares the definitions of common types between all schemas
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())
+        try {
+            executor.invokeAll(jobs).each { it.get() }
+        } finally {
+            executor.shutdown()
+        }
 
-            writeSchema(schema, ref.key)
+        if (fragments) {
+            writeFragments(schemas)
         }
 
         println new Date()
     }
 
     protected Docs loadDocs() {
-        List<LayerDocs> layers = []
+        return docsService.get().getDocs(getSourceFiles().files, { file, interner -> LayerDocsTask.readLayerDocs(file, interner) })
+    }
+
+    protected void writeFragments(Map<String, Map<String, Object>> schemas) {
+        Map<String, Map<String, Object>> shared = new TreeMap<>()
 
-        getSourceFiles().files.each {
-            def docs = project.zipTree(it).matching { include 'layer-docs.json' }.singleFile
-            layers.add(gson.fromJson(docs.text, LayerDocs.class))
+        // merged in a fixed order, so the fragments do not depend on the order of the jobs
+        new TreeMap<>(schemas).each { name, schema ->
+            JsonSchemaGenerator.toFragments(schema, shared).each { key, fragment ->
+                if (key == null) {
+                    if (fragment.containsKey('$defs')) {
+                        println "- " + name + ": inlined definitions that differ from other schemas " + ((Map) fragment.get('$defs')).keySet()
+                    }
+                    writeSchema(fragment, name)
+                } else {
+                    shared.put(key, fragment)
+                }
+            }
         }
 
-        return new Docs(layers)
+        File fragmentsDir = new File(getOutputDir(), JsonSchemaGenerator.FRAGMENTS_DIR)
+        fragmentsDir.listFiles()?.each { file ->
+            if (!shared.containsKey(file.name.replaceFirst(/\.json$/, ''))) {
+                file.delete()
+            }
+        }
+        shared.each { key, fragment ->
+            writeSchema(fragment, JsonSchemaGenerator.FRAGMENTS_DIR + "/" + key)
+        }
     }
 
     protected void writeSchema(Map<String, Object> schema, String name) {
-        String json = gson.toJson(schema);
-
-        getOutputDir().mkdirs()
-
         File file = new File(getOutputDir(), name + ".json")
 
-        file.text = json
+        file.parentFile.mkdirs()
+
+        try (JsonWriter writer = gson.newJsonWriter(file.newWriter())) {
+            gson.toJson(schema, schema.getClass(), writer)
+        }
     }
 }
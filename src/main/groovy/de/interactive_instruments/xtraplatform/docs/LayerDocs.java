@@ -1,11 +1,14 @@
 package de.interactive_instruments.xtraplatform.docs;
 
 import de.interactive_instruments.xtraplatform.Maturity;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -15,6 +18,9 @@ class LayerDocs {
     String version;
     String description;
     Map<String, ModuleDocs> modules;
+    // precomputed by BinaryLayerDocs, otherwise computed on first access
+    private transient Index index;
+
     Optional<TypeDocs> getType(String qualifiedName) {
         if (Objects.isNull(modules)) {
             return Optional.empty();
@@ -26,4 +32,76 @@ class LayerDocs {
             .map(Optional::get)
             .findFirst();
     }
+
+    // all types in declaration order, the position is the ordinal used by the index
+    void forEachType(BiConsumer<ModuleDocs, TypeDocs> consumer) {
+        if (Objects.isNull(modules)) {
+            return;
+        }
+        for (ModuleDocs module : modules.values()) {
+            module.getTypes(typeDocs -> true).forEach(type -> consumer.accept(module, type));
+        }
+    }
+
+    synchronized Index getIndex() {
+        if (Objects.isNull(index)) {
+            this.index = Index.of(this);
+        }
+        return index;
+    }
+
+    synchronized void setIndex(Index index) {
+        this.index = index;
+    }
+
+    /**
+     * The ordinals of the types of the layer by implemented interface, super class and annotation,
+     * used for the lookup indexes in {@link Docs}.
+     */
+    static class Index {
+        final Map<String, List<Integer>> interfaces;
+        final Map<String, List<Integer>> superClasses;
+        final Map<String, List<Integer>> annotations;
+
+        Index(
+            Map<String, List<Integer>> interfaces,
+            Map<String, List<Integer>> superClasses,
+            Map<String, List<Integer>> annotations) {
+            this.interfaces = interfaces;
+            this.superClasses = superClasses;
+            this.annotations = annotations;
+        }
+
+        static Index of(LayerDocs layer) {
+            Index index =
+                new Index(new LinkedHashMap<>(), new LinkedHashMap<>(), new LinkedHashMap<>());
+            int[] ordinal = {0};
+
+            layer.forEachType(
+                (module, type) -> {
+                    int current = ordinal[0]++;
+
+                    if (type.hasInterfaces()) {
+                        type.interfaces.stream()
+                            .filter(Objects::nonNull)
+                            .map(elementDocs -> elementDocs.qualifiedName)
+                            .distinct()
+                            .forEach(qn -> addTo(index.interfaces, qn, current));
+                    }
+                    if (Objects.nonNull(type.superClass)) {
+                        addTo(index.superClasses, type.superClass.qualifiedName, current);
+                    }
+                    type.getAnnotations()
+                        .map(annotationDocs -> annotationDocs.qualifiedName)
+                        .distinct()
+                        .forEach(qn -> addTo(index.annotations, qn, current));
+                });
+
+            return index;
+        }
+
+        private static void addTo(Map<String, List<Integer>> index, String key, int ordinal) {
+            index.computeIfAbsent(key, ignore -> new ArrayList<>()).add(ordinal);
+        }
+    }
 }
@@ -1,16 +1,21 @@
 package de.interactive_instruments.xtraplatform.docs
 
 import com.google.gson.Gson
+import de.interactive_instruments.xtraplatform.JarEntries
 import org.gradle.api.DefaultTask
 import org.gradle.api.file.FileCollection
 import org.gradle.api.tasks.*
 
+import java.nio.ByteBuffer
+
 @CacheableTask
 class LayerDocsTask extends DefaultTask {
 
     static final String LAYER_DOCS_FILE_NAME = "layer-docs.json";
+    static final String LAYER_DOCS_BINARY_FILE_NAME = "layer-docs.bin";
 
     private FileCollection sourceFiles = project.files();
+    private boolean binary = false
     private File outputDir = new File(project.buildDir, "generated/sources/annotationProcessor/resources/docs")
 
     @SkipWhenEmpty
@@ -20,10 +25,22 @@ class LayerDocsTask extends DefaultTask {
         return this.sourceFiles;
     }
 
+    @Input
+    boolean getBinary() {
+        return binary
+    }
+
     void sources(FileCollection sourceFiles) {
         this.sourceFiles = this.sourceFiles + sourceFiles;
     }
 
+    /**
+     * also write layer-docs.bin, consumers prefer it over layer-docs.json
+     */
+    void binary(boolean binary) {
+        this.binary = binary;
+    }
+
     @OutputDirectory
     File getOutputDir() {
         return outputDir
@@ -51,8 +68,21 @@ class LayerDocsTask extends DefaultTask {
         try {
             outputDir.mkdirs()
             XtraPlatformDoclet.writeJson(new File(outputDir, LAYER_DOCS_FILE_NAME), docs);
+            if (binary) {
+                BinaryLayerDocs.write(new File(outputDir, LAYER_DOCS_BINARY_FILE_NAME), docs);
+            } else {
+                new File(outputDir, LAYER_DOCS_BINARY_FILE_NAME).delete()
+            }
         } catch (IOException e) {
             System.out.println(e.getMessage());
         }
     }
+
+    static LayerDocs readLayerDocs(File docsJar, Interner interner) {
+        if (JarEntries.exists(docsJar, LAYER_DOCS_BINARY_FILE_NAME)) {
+            return JarEntries.read(docsJar, LAYER_DOCS_BINARY_FILE_NAME, { BinaryLayerDocs.read(ByteBuffer.wrap(it.readAllBytes()), interner) })
+        }
+
+        return JsonLayerDocs.read(docsJar, LAYER_DOCS_FILE_NAME, interner)
+    }
 }
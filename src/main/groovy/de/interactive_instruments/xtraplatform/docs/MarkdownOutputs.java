@@ -0,0 +1,113 @@
+package de.interactive_instruments.xtraplatform.docs;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Remembers for every markdown file the fingerprint of its inputs and the hash of its content, see
+ * {@link DocRef#getDocFingerprint}. On the next run a file is only rendered again when its inputs
+ * changed or the file was modified in the meantime, and only written when the content changed, so
+ * that the docs site build only sees real changes.
+ */
+class MarkdownOutputs {
+
+  private static final Gson GSON = new Gson();
+  private static final Type STATE = new TypeToken<Map<String, Output>>() {}.getType();
+
+  private final File outputDir;
+  private final File stateFile;
+  private final Map<String, Output> previous;
+  private final Map<String, Output> current;
+  private final AtomicInteger rendered;
+  private final AtomicInteger written;
+
+  private MarkdownOutputs(File outputDir, File stateFile, Map<String, Output> previous) {
+    this.outputDir = outputDir;
+    this.stateFile = stateFile;
+    this.previous = previous;
+    this.current = new ConcurrentHashMap<>();
+    this.rendered = new AtomicInteger();
+    this.written = new AtomicInteger();
+  }
+
+  static MarkdownOutputs read(File outputDir, File stateFile) {
+    Map<String, Output> previous = null;
+
+    if (stateFile.isFile()) {
+      try {
+        previous =
+            GSON.fromJson(Files.readString(stateFile.toPath(), StandardCharsets.UTF_8), STATE);
+      } catch (IOException | JsonParseException e) {
+        // render everything
+      }
+    }
+
+    return new MarkdownOutputs(
+        outputDir, stateFile, Objects.requireNonNullElseGet(previous, Map::of));
+  }
+
+  void write(String path, String inputs, Supplier<String> renderer) throws IOException {
+    File file = new File(outputDir, path);
+    Output last = previous.get(path);
+
+    if (Objects.nonNull(last)
+        && Objects.equals(last.inputs, inputs)
+        && file.isFile()
+        && Objects.equals(last.content, hash(Files.readAllBytes(file.toPath())))) {
+      current.put(path, last);
+      return;
+    }
+
+    byte[] content = renderer.get().getBytes(Charset.defaultCharset());
+    rendered.incrementAndGet();
+
+    if (!file.isFile() || !Arrays.equals(Files.readAllBytes(file.toPath()), content)) {
+      file.getParentFile().mkdirs();
+      Files.write(file.toPath(), content);
+      written.incrementAndGet();
+    }
+
+    current.put(path, new Output(inputs, hash(content)));
+  }
+
+  void save() throws IOException {
+    stateFile.getParentFile().mkdirs();
+    Files.writeString(
+        stateFile.toPath(), GSON.toJson(new TreeMap<>(current), STATE), StandardCharsets.UTF_8);
+  }
+
+  String report() {
+    return String.format(
+        "Markdown: %d files, %d rendered, %d written",
+        current.size(), rendered.get(), written.get());
+  }
+
+  private static String hash(byte[] content) {
+    return Hashing.sha256().hashBytes(content).toString();
+  }
+
+  private static class Output {
+    final String inputs;
+    final String content;
+
+    Output(String inputs, String content) {
+      this.inputs = inputs;
+      this.content = content;
+    }
+  }
+}
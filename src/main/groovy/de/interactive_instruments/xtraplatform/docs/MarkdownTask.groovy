@@ -1,15 +1,24 @@
 package de.interactive_instruments.xtraplatform.docs
 
-import com.google.gson.Gson
 import org.gradle.api.DefaultTask
 import org.gradle.api.file.FileCollection
+import org.gradle.api.provider.Provider
 import org.gradle.api.tasks.*
 
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
 @CacheableTask
 class MarkdownTask extends DefaultTask {
 
     private File outputDir = new File(project.buildDir, "tmp/markdown")
     private String docsName
+    private final Provider<DocsService> docsService = DocsService.register(project)
+
+    MarkdownTask() {
+        usesService(docsService)
+    }
 
     @SkipWhenEmpty
     @InputFiles
@@ -41,53 +50,57 @@ class MarkdownTask extends DefaultTask {
         println new Date()
         Docs docs = loadDocs()
         List<DocFilesTemplate> templates = docs.getDocFilesTemplates()
+        List<Callable<Void>> jobs = []
+        MarkdownOutputs outputs = MarkdownOutputs.read(getOutputDir(), new File(getTemporaryDir(), "fingerprints.json"))
 
         docs.getDocFiles()
-                .forEach(docFile -> writeDocFile(docFile.docRef, docFile.path, docFile.name, docFile.tables, docFile.vars))
+                .forEach(docFile -> writeDocFile(jobs, outputs, docFile.docRef, docFile.path, docFile.name, docFile.tables, docFile.vars))
 
-        if (!templates.isEmpty()) {
-            docs.streamTypes()
+        templates.each { template ->
+            docs.findTypeByInterface(template.getTypeName())
                     .forEach(typeRef -> {
-                        templates.each { template ->
-                            if (typeRef.getType().hasInterface(template.getTypeName())) {
-                                java.util.Optional<DocFile> defs = docs.getDocDefs(typeRef);
-                                List<DocTable> additionalTables = defs.map(df -> df.tables).orElse([]);
-                                List<DocVar> additionalVars = defs.map(df -> df.vars).orElse([]);
-
-                                writeDocFile(typeRef, template.path, template.getName(typeRef), template.tables + additionalTables, template.vars + additionalVars, template.template)
-                            }
-                        }
+                        java.util.Optional<DocFile> defs = docs.getDocDefs(typeRef);
+                        List<DocTable> additionalTables = defs.map(df -> df.tables).orElse([]);
+                        List<DocVar> additionalVars = defs.map(df -> df.vars).orElse([]);
+
+                        writeDocFile(jobs, outputs, typeRef, template.path, template.getName(typeRef), template.tables + additionalTables, template.vars + additionalVars, template.template)
                     });
         }
+
+        // every file and language is rendered separately, Docs is safe for concurrent reads
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())
+        try {
+            executor.invokeAll(jobs).each { it.get() }
+        } finally {
+            executor.shutdown()
+        }
+        outputs.save()
+        println outputs.report()
         println new Date()
     }
 
     protected Docs loadDocs() {
-        Gson gson = new Gson()
-        List<LayerDocs> layers = []
-
-        getSourceFiles().files.each {
-            def docs = project.zipTree(it).matching { include 'layer-docs.json' }.singleFile
-            layers.add(gson.fromJson(docs.text, LayerDocs.class))
-        }
-
-        return new Docs(layers)
+        return docsService.get().getDocs(getSourceFiles().files, { file, interner -> LayerDocsTask.readLayerDocs(file, interner) })
     }
 
-    protected void writeDocFile(DocRef docRef, String path, String name, List<DocTable> tables, List<DocVar> vars, List<DocI18n> templates = []) {
+    protected void writeDocFile(List<Callable<Void>> jobs, MarkdownOutputs outputs, DocRef docRef, String path, String name, List<DocTable> tables, List<DocVar> vars, List<DocI18n> templates = []) {
         def languages = docRef.getDocLanguages()
         def filePath = path + "/" + name;
 
         println "DOC " + docRef.getType().qualifiedName + " - " + filePath + " - " + languages + " - " + templates.size()
 
         languages.each { lang ->
-            def md = new File(new File(getOutputDir(), lang == 'en' ? '' : lang), filePath)
-            md.parentFile.mkdirs()
-            java.util.Optional<String> template = templates.stream()
-                    .filter(t -> Objects.equals(t.language, lang))
-                    .map(t -> t.value)
-                    .findFirst()
-            md.text = docRef.getDocText(docRef, lang, tables, vars, template)
+            jobs.add({
+                java.util.Optional<String> template = templates.stream()
+                        .filter(t -> Objects.equals(t.language, lang))
+                        .map(t -> t.value)
+                        .findFirst()
+                // unchanged files are neither rendered nor written again
+                outputs.write((lang == 'en' ? '' : lang + '/') + filePath,
+                        docRef.getDocFingerprint(lang, tables, vars, template),
+                        { docRef.getDocText(docRef, lang, tables, vars, template) })
+                return null
+            } as Callable<Void>)
         }
     }
 }
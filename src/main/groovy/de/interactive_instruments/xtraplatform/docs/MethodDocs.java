@@ -1,10 +1,25 @@
 package de.interactive_instruments.xtraplatform.docs;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 public class MethodDocs extends ElementDocs {
 
   List<VariableDocs> parameters;
   boolean isConstructor;
   String returnType;
+  private transient String signature;
+
+  // name plus parameter names and types, two methods with the same signature override each other
+  String getSignature() {
+    if (Objects.isNull(signature)) {
+      this.signature =
+          qualifiedName
+              + Objects.requireNonNullElse(parameters, List.<VariableDocs>of()).stream()
+                  .map(parameter -> parameter.qualifiedName + ":" + parameter.type)
+                  .collect(Collectors.joining(";", "(", ")"));
+    }
+    return signature;
+  }
 }
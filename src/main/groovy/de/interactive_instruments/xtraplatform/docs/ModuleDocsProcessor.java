@@ -0,0 +1,143 @@
+package de.interactive_instruments.xtraplatform.docs;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import com.sun.source.util.DocTrees;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.StandardLocation;
+
+/**
+ * Extracts the same type docs as {@link XtraPlatformDoclet} during compilation. Every public type
+ * is written to {@link #TYPES_DIR} in the generated sources with its top level type as the only
+ * originating element, so the processor is isolating and only changed types are extracted again
+ * on incremental compilation. The type docs of a module are merged into module-docs.json by
+ * {@link ModuleDocsTask}.
+ *
+ * <p>Every top level type is scanned on its own, never together with other types that happen to be
+ * compiled in the same round. References in doc comments that do not point to the type itself are
+ * written as symbolic references and resolved from all types of the module when merging, like the
+ * doclet does. References that are neither resolved from the imports nor from the known types are
+ * reported as warnings, since merging fails if no type of the module matches either.
+ */
+public class ModuleDocsProcessor extends AbstractProcessor {
+
+  static final String TYPES_DIR = "module-docs";
+
+  private static final Gson GSON = new GsonBuilder().create();
+
+  private DocTrees docTrees;
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    this.docTrees = getDocTrees(processingEnv);
+  }
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Set.of("*");
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (TypeElement topLevelType : ElementFilter.typesIn(roundEnv.getRootElements())) {
+      // public types only, like the doclet with -public
+      Set<TypeElement> types = new LinkedHashSet<>();
+      addPublicTypes(types, topLevelType);
+      if (types.isEmpty()) {
+        continue;
+      }
+
+      TypeScanner typeScanner =
+          new TypeScanner(
+              docTrees, processingEnv.getElementUtils(), processingEnv.getTypeUtils(), true);
+      List<ElementDocs> typeDocs = typeScanner.show(types);
+
+      for (String unresolved : typeScanner.getUnresolvedReferences()) {
+        processingEnv.getMessager().printMessage(Kind.WARNING, unresolved, topLevelType);
+      }
+
+      for (ElementDocs typeDoc : typeDocs) {
+        try {
+          writeTypeDocs((TypeDocs) typeDoc, topLevelType);
+        } catch (IOException e) {
+          processingEnv
+              .getMessager()
+              .printMessage(
+                  Kind.ERROR,
+                  "Cannot write docs for " + typeDoc.qualifiedName + ": " + e,
+                  topLevelType);
+        }
+      }
+    }
+
+    return false;
+  }
+
+  private static void addPublicTypes(Set<TypeElement> types, TypeElement type) {
+    if (!type.getModifiers().contains(Modifier.PUBLIC)) {
+      return;
+    }
+    types.add(type);
+
+    for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+      addPublicTypes(types, nested);
+    }
+  }
+
+  private void writeTypeDocs(TypeDocs typeDocs, Element originatingElement) throws IOException {
+    String path = TYPES_DIR + "/" + typeDocs.qualifiedName + ".json";
+
+    try (Writer writer =
+            new OutputStreamWriter(
+                processingEnv
+                    .getFiler()
+                    .createResource(StandardLocation.SOURCE_OUTPUT, "", path, originatingElement)
+                    .openOutputStream(),
+                StandardCharsets.UTF_8);
+        JsonWriter jsonWriter = GSON.newJsonWriter(writer)) {
+      GSON.toJson(typeDocs, TypeDocs.class, jsonWriter);
+    }
+  }
+
+  // gradle wraps the environment for incremental processing, DocTrees needs the one of javac
+  private static DocTrees getDocTrees(ProcessingEnvironment processingEnv) {
+    try {
+      return DocTrees.instance(processingEnv);
+    } catch (IllegalArgumentException e) {
+      for (Field field : processingEnv.getClass().getDeclaredFields()) {
+        if (ProcessingEnvironment.class.isAssignableFrom(field.getType())) {
+          try {
+            field.setAccessible(true);
+            return getDocTrees((ProcessingEnvironment) field.get(processingEnv));
+          } catch (IllegalAccessException | RuntimeException e2) {
+            // try next
+          }
+        }
+      }
+      throw e;
+    }
+  }
+}
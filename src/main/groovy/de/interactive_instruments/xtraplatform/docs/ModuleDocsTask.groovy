@@ -0,0 +1,169 @@
+package de.interactive_instruments.xtraplatform.docs
+
+import com.google.gson.Gson
+import de.interactive_instruments.xtraplatform.Maintenance
+import de.interactive_instruments.xtraplatform.Maturity
+import org.gradle.api.DefaultTask
+import org.gradle.api.Project
+import org.gradle.api.file.FileCollection
+import org.gradle.api.provider.Provider
+import org.gradle.api.tasks.*
+import org.gradle.jvm.toolchain.JavaLauncher
+import org.gradle.jvm.toolchain.JavaToolchainService
+import org.gradle.workers.WorkQueue
+import org.gradle.workers.WorkerExecutor
+
+import javax.inject.Inject
+
+/**
+ * Generates the module docs of all modules of a layer with {@link XtraPlatformDoclet} in Gradle
+ * workers, instead of a javadoc process per module. The workers run on the java toolchain of the
+ * module with the release of compileJava, like the javadoc tasks did. The output is the same
+ * module-docs.json per module.
+ *
+ * <p>With {@link #processor(boolean)}, the type docs were already extracted during compileJava by
+ * {@link ModuleDocsProcessor} and are only merged into module-docs.json.
+ */
+class ModuleDocsTask extends DefaultTask {
+
+    private final WorkerExecutor workerExecutor
+    private final List<Project> modules = []
+    private boolean processor = false
+
+    @Inject
+    ModuleDocsTask(WorkerExecutor workerExecutor) {
+        this.workerExecutor = workerExecutor
+    }
+
+    void module(Project module) {
+        modules.add(module)
+        dependsOn module.tasks.named('compileJava')
+    }
+
+    void processor(boolean processor) {
+        this.processor = processor
+    }
+
+    @Input
+    boolean getProcessor() {
+        return processor
+    }
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    FileCollection getSourceFiles() {
+        if (processor) {
+            return project.files(modules.collect { getTypesDir(it) })
+        }
+        return project.files(modules.collect { getSources(it) })
+    }
+
+    @Classpath
+    FileCollection getClasspath() {
+        if (processor) {
+            return project.files()
+        }
+        return project.files(modules.collect { it.sourceSets.main.compileClasspath })
+    }
+
+    @Input
+    List<String> getJavaVersions() {
+        if (processor) {
+            return []
+        }
+        return modules.collect { getJavaLauncher(it).get().metadata.javaRuntimeVersion }
+    }
+
+    @Input
+    List<Integer> getReleases() {
+        if (processor) {
+            return []
+        }
+        return modules.collect { getRelease(it) }
+    }
+
+    @Input
+    List<String> getModuleInfos() {
+        return modules.collect { getModuleInfo(it) }
+    }
+
+    @OutputDirectories
+    List<File> getDestinationDirs() {
+        return modules.collect { getDestinationDir(it) }
+    }
+
+    @TaskAction
+    void generateDocs() {
+        if (processor) {
+            modules.each { module ->
+                XtraPlatformDoclet.merge(getTypesDir(module), getDestinationDir(module), getModuleInfo(module))
+            }
+            return
+        }
+
+        modules.each { module ->
+            FileCollection sources = getSources(module)
+            FileCollection classpath = module.sourceSets.main.compileClasspath
+            File destinationDir = getDestinationDir(module)
+            String moduleInfo = getModuleInfo(module)
+            Integer release = getRelease(module)
+            File javaExecutable = getJavaLauncher(module).get().executablePath.asFile
+
+            // worker processes with the same executable are reused across modules
+            WorkQueue workQueue = workerExecutor.processIsolation {
+                forkOptions.executable = javaExecutable
+            }
+
+            workQueue.submit(ModuleDocsWork) { parameters ->
+                parameters.sources.from(sources)
+                parameters.classpath.from(classpath)
+                parameters.destinationDir.set(destinationDir)
+                parameters.moduleInfo.set(moduleInfo)
+                parameters.release.set(release)
+            }
+        }
+    }
+
+    static Provider<JavaLauncher> getJavaLauncher(Project module) {
+        return module.extensions.getByType(JavaToolchainService).launcherFor(module.java.toolchain)
+    }
+
+    static Integer getRelease(Project module) {
+        return module.tasks.compileJava.options.release.getOrNull()
+    }
+
+    static FileCollection getSources(Project module) {
+        return module.files(module.sourceSets.main.allJava, module.tasks.compileJava.options.generatedSourceOutputDirectory)
+                .asFileTree
+                .matching {
+                    include '**/*.java'
+                    exclude '**/module-info.java'
+                }
+    }
+
+    static File getTypesDir(Project module) {
+        return new File(module.tasks.compileJava.options.generatedSourceOutputDirectory.get().asFile, ModuleDocsProcessor.TYPES_DIR)
+    }
+
+    static File getDestinationDir(Project module) {
+        return new File(module.buildDir, 'tmp/module-docs')
+    }
+
+    static String getModuleInfo(Project module) {
+        ModuleDocs docs = new ModuleDocs(
+                id: module.moduleInfo.name.toString(),
+                name: module.name.toString(),
+                version: module.version.toString(),
+                description: Objects.requireNonNullElse(module.description, '').toString(),
+                descriptionDe: module.descriptionDe,
+                maturity: module.maturity as Maturity,
+                maintenance: module.hasProperty("maintenance") ? module.maintenance as Maintenance : Maintenance.NONE,
+                deprecated: module.deprecated,
+                docIgnore: module.docIgnore,
+                exports: module.moduleInfo.exports.collect { it.toString() },
+                requires: module.moduleInfo.requires.collect { it.toString() },
+        )
+
+        return new Gson().toJson(docs)
+    }
+}
@@ -0,0 +1,35 @@
+package de.interactive_instruments.xtraplatform.docs
+
+import org.gradle.api.file.ConfigurableFileCollection
+import org.gradle.api.file.DirectoryProperty
+import org.gradle.api.provider.Property
+import org.gradle.workers.WorkAction
+import org.gradle.workers.WorkParameters
+
+/**
+ * Generates the module docs of a single module, see {@link ModuleDocsTask}.
+ */
+abstract class ModuleDocsWork implements WorkAction<Parameters> {
+
+    interface Parameters extends WorkParameters {
+        ConfigurableFileCollection getSources()
+
+        ConfigurableFileCollection getClasspath()
+
+        DirectoryProperty getDestinationDir()
+
+        Property<String> getModuleInfo()
+
+        Property<Integer> getRelease()
+    }
+
+    @Override
+    void execute() {
+        XtraPlatformDoclet.run(
+                parameters.sources.files,
+                parameters.classpath.files,
+                parameters.destinationDir.get().asFile,
+                parameters.moduleInfo.get(),
+                parameters.release.getOrNull())
+    }
+}
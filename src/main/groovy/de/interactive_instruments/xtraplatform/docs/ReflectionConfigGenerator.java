@@ -13,6 +13,10 @@ public class ReflectionConfigGenerator {
 
   static final Type LIST_MAP = new TypeToken<List<Map<String, Object>>>() {}.getType();
 
+  private static final StepResolver.Plan PROPERTIES =
+      StepResolver.compile(
+          List.of(new DocStep(Step.JSON_PROPERTIES, List.of("skipDocIgnore"))));
+
   private final Docs docs;
   private final Gson gson;
   private final Map<String, Map<String, Object>> nestedDefs;
@@ -62,8 +66,7 @@ public class ReflectionConfigGenerator {
     Map<String, Object> object = new LinkedHashMap<>();
     List<Map<String, Object>> properties = new ArrayList<>(extraProps);
 
-    resolveRowSteps(
-            docs, type, List.of(new DocStep(Step.JSON_PROPERTIES, List.of("skipDocIgnore"))))
+    resolveRowSteps(docs, type, PROPERTIES)
         .filter(DocRef::isMethod)
         .forEach(
             prop -> {
@@ -77,7 +80,7 @@ public class ReflectionConfigGenerator {
       properties.add(Map.of("name", "<init>", "parameterTypes", List.of()));
     }
 
-    object.put("name", restoreInnerClassName(type.getType().qualifiedName));
+    object.put("name", JavaType.toBinaryName(type.getType().qualifiedName));
     object.put("allDeclaredFields", true);
     object.put("queryAllDeclaredMethods", true);
     object.put("queryAllDeclaredConstructors", true);
@@ -104,7 +107,7 @@ public class ReflectionConfigGenerator {
         Stream.concat(
                 def.stream(),
                 Objects.nonNull(method.returnType) ? Stream.of(method.returnType) : Stream.empty())
-            .flatMap(t -> resolveTypes(t).stream())
+            .flatMap(t -> docs.getJavaType(t).getAllRawTypes().stream())
             .collect(Collectors.toList());
 
     for (String type : types) {
@@ -124,8 +127,7 @@ public class ReflectionConfigGenerator {
 
     List<String> cleanDef =
         def.stream()
-            .map(d -> d.contains("<") ? d.substring(0, d.indexOf("<")) : d)
-            .map(ReflectionConfigGenerator::restoreInnerClassName)
+            .map(d -> docs.getJavaType(d).getBinaryName())
             .collect(Collectors.toList());
 
     return Map.of("name", name, "parameterTypes", cleanDef);
@@ -248,52 +250,7 @@ public class ReflectionConfigGenerator {
     }
   }
 
-  private static List<String> resolveTypes(String type) {
-    List<String> types = new ArrayList<>();
-
-    if (type.contains("<")) {
-      types.add(type.substring(0, type.indexOf("<")));
-      int start = type.indexOf("<") + 1;
-      int end = type.contains(">") ? type.lastIndexOf(">") : type.length();
-
-      for (String g : type.substring(start, end).split(",")) {
-        String t = g.replace("? extends ", "").trim();
-        if (t.contains("<")) {
-          types.addAll(resolveTypes(t));
-        } else if (t.contains(">")) {
-          types.add(t.substring(0, t.lastIndexOf(">")));
-        } else {
-          types.add(t);
-        }
-      }
-    } else {
-      types.add(type);
-    }
-    return types;
-  }
-
-  static String restoreInnerClassName(String type) {
-    if (!type.contains(".")) {
-      return type;
-    }
-
-    String pkg = type.substring(0, type.lastIndexOf("."));
-    String name = type.substring(type.lastIndexOf(".") + 1);
-    String parentName = pkg.substring(pkg.lastIndexOf(".") + 1);
-
-    boolean isInnerClass = Character.isUpperCase(parentName.charAt(0));
-    String separator = isInnerClass ? "$" : ".";
-
-    return pkg + separator + name;
-  }
-
-  static Stream<DocRef> resolveRowSteps(Docs docs, DocRef root, List<DocStep> steps) {
-    Entry<Class<?>, Stream<?>> result = StepResolver.resolve(docs, root, steps, "en");
-
-    if (result.getKey() != DocRef.class) {
-      throw new IllegalArgumentException();
-    }
-
-    return result.getValue().map(DocRef.class::cast);
+  static Stream<DocRef> resolveRowSteps(Docs docs, DocRef root, StepResolver.Plan plan) {
+    return plan.resolveRows(docs, root, "en");
   }
 }
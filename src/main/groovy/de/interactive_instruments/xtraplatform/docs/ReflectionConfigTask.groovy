@@ -2,8 +2,10 @@ package de.interactive_instruments.xtraplatform.docs
 
 import com.google.gson.Gson
 import com.google.gson.GsonBuilder
+import com.google.gson.stream.JsonWriter
 import org.gradle.api.DefaultTask
 import org.gradle.api.file.FileCollection
+import org.gradle.api.provider.Provider
 import org.gradle.api.tasks.*
 
 @CacheableTask
@@ -23,11 +25,16 @@ class ReflectionConfigTask extends DefaultTask {
     private String docsName
     private List<EntryPoint> entryPoints
     private List<String> extraTypes = []
+    private final Provider<DocsService> docsService = DocsService.register(project)
 
     private static final Gson gson = new GsonBuilder()
             .setPrettyPrinting()
             .create()
 
+    ReflectionConfigTask() {
+        usesService(docsService)
+    }
+
     @SkipWhenEmpty
     @InputFiles
     @PathSensitive(PathSensitivity.NONE)
@@ -105,23 +112,16 @@ class ReflectionConfigTask extends DefaultTask {
     }
 
     protected Docs loadDocs() {
-        List<LayerDocs> layers = []
-
-        getSourceFiles().files.each {
-            def docs = project.zipTree(it).matching { include 'layer-docs.json' }.singleFile
-            layers.add(gson.fromJson(docs.text, LayerDocs.class))
-        }
-
-        return new Docs(layers)
+        return docsService.get().getDocs(getSourceFiles().files, { file, interner -> LayerDocsTask.readLayerDocs(file, interner) })
     }
 
     protected void writeSchema(List<Map<String, Object>> schema, String name) {
-        String json = gson.toJson(schema);
-
         getOutputDir().mkdirs()
 
         File file = new File(getOutputDir(), name + ".json")
 
-        file.text = json
+        try (JsonWriter writer = gson.newJsonWriter(file.newWriter())) {
+            gson.toJson(schema, schema.getClass(), writer)
+        }
     }
 }
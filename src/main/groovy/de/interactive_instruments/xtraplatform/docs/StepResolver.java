@@ -2,7 +2,8 @@ package de.interactive_instruments.xtraplatform.docs;
 
 import com.google.common.base.Splitter;
 import java.util.*;
-import java.util.AbstractMap.SimpleEntry;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -21,315 +22,285 @@ public class StepResolver {
   private static final Splitter OPERANDS_SPLITTER =
       Splitter.on(",").omitEmptyStrings().trimResults();
 
-  static Map.Entry<Class<?>, Stream<?>> resolve(
-      Docs docs, DocRef root, List<DocStep> steps, String language) {
-    Stream<?> result = Stream.of(root);
+  /**
+   * A step list compiled once into stages with pre-parsed parameters, see {@link #compile}. The
+   * leading steps that map types to types do not depend on the language, their results are
+   * memoized per root ref in {@link Docs}, so only the remaining steps run for every language.
+   */
+  static class Plan {
+    private final Class<?> out;
+    private final List<DocStep> prefix;
+    private final List<Stage> stages;
+
+    private Plan(Class<?> out, List<DocStep> prefix, List<Stage> stages) {
+      this.out = out;
+      this.prefix = prefix;
+      this.stages = stages;
+    }
+
+    Stream<DocRef> resolveRows(Docs docs, DocRef root, String language) {
+      if (out != DocRef.class) {
+        throw new IllegalArgumentException();
+      }
+
+      return execute(docs, root, language).map(DocRef.class::cast);
+    }
+
+    Optional<String> resolveColumn(Docs docs, DocRef root, String language) {
+      if (out != String.class) {
+        throw new IllegalArgumentException();
+      }
+
+      return execute(docs, root, language).map(String.class::cast).findFirst();
+    }
+
+    // the refs the language dependent steps are applied to, i.e. what a result depends on
+    Stream<DocRef> resolveRefs(Docs docs, DocRef root) {
+      return prefix.isEmpty()
+          ? Stream.of(root)
+          : docs.getStepResults(root, prefix, () -> executePrefix(docs, root)).stream();
+    }
+
+    private Stream<?> execute(Docs docs, DocRef root, String language) {
+      Stream<?> result = resolveRefs(docs, root);
+
+      for (Stage stage : stages.subList(prefix.size(), stages.size())) {
+        result = stage.apply(docs, result, language);
+      }
+
+      return result;
+    }
+
+    private Stream<DocRef> executePrefix(Docs docs, DocRef root) {
+      Stream<?> result = Stream.of(root);
+
+      for (Stage stage : stages.subList(0, prefix.size())) {
+        result = stage.apply(docs, result, null);
+      }
+
+      return result.map(DocRef.class::cast);
+    }
+  }
+
+  private interface Stage {
+    Stream<?> apply(Docs docs, Stream<?> in, String language);
+  }
+
+  private interface TypeMapper {
+    String apply(Docs docs, DocRef in, String language);
+  }
+
+  static Plan compile(List<DocStep> steps) {
+    List<Stage> stages = new ArrayList<>();
     Class<?> currentOut = DocRef.class;
+    int prefix = 0;
 
     for (DocStep step : steps) {
       if (step.type.in != currentOut) {
         throw new IllegalArgumentException();
       }
-      if (step.type.in == DocRef.class && !step.type.multipleIn && step.type.multipleOut) {
-        result =
-            result.flatMap(typeRef -> flatMapType(docs, (DocRef) typeRef, step, step.type.out));
-        currentOut = step.type.out;
-      } else if (step.type.in == DocRef.class && !step.type.multipleIn && !step.type.multipleOut) {
-        result =
-            result.map(typeRef -> mapType(docs, (DocRef) typeRef, step, language, step.type.out));
-        currentOut = step.type.out;
-      } else if (step.type.in == DocRef.class
-          && step.type.out == DocRef.class
-          && step.type.multipleIn
-          && step.type.multipleOut) {
-        result = transformTypes(result.map(DocRef.class::cast), step, language);
-        currentOut = step.type.out;
-      } else if (step.type.in == String.class && !step.type.multipleIn && !step.type.multipleOut) {
-        result = result.map(string -> mapString((String) string, step, language, step.type.out));
-        currentOut = step.type.out;
-      } else if (step.type.in == String.class
-          && step.type.out == String.class
-          && step.type.multipleIn
-          && !step.type.multipleOut) {
-        result = collectString(result.map(String.class::cast), step, language);
-        currentOut = step.type.out;
-      } else {
-        throw new IllegalArgumentException();
+      stages.add(compile(step));
+      currentOut = step.type.out;
+      if (currentOut == DocRef.class && prefix == stages.size() - 1) {
+        prefix++;
       }
     }
 
-    return new SimpleEntry<>(currentOut, result);
+    return new Plan(currentOut, List.copyOf(steps.subList(0, prefix)), List.copyOf(stages));
   }
 
-  private static <T> Stream<T> flatMapType(Docs docs, DocRef in, DocStep step, Class<T> out) {
+  private static Stage compile(DocStep step) {
     switch (step.type) {
       case MODULES:
-        return docs.streamLayers()
-            .flatMap(
-                layerDocs ->
-                    layerDocs.modules.values().stream()
-                        .filter(moduleDocs -> !moduleDocs.docIgnore)
-                        .map(moduleDocs -> new DocRef(docs, layerDocs, moduleDocs, null)))
-            .map(out::cast);
+        return flatMapType(
+            (docs, in) ->
+                docs.streamLayers()
+                    .flatMap(
+                        layerDocs ->
+                            layerDocs.modules.values().stream()
+                                .filter(moduleDocs -> !moduleDocs.docIgnore)
+                                .map(moduleDocs -> new DocRef(docs, layerDocs, moduleDocs, null))));
       case IMPLEMENTATIONS:
-        return Stream.of(in)
-            .flatMap(
-                typeRef -> {
-                  List<DocRef> byInterface =
-                      docs.findTypeByInterface(typeRef.getType().qualifiedName);
-
-                  Stream<DocRef> children =
-                      (byInterface.isEmpty()
-                              ? docs.findTypeBySuperClass(typeRef.getType().qualifiedName).stream()
-                              : byInterface.stream())
-                          .filter(DocRef::hasDocs);
-
-                  if (typeRef.hasAnnotation(DocFilesTemplate.ANNOTATION)) {
-                    DocFilesTemplate docFilesTemplate =
-                        DocFilesTemplate.from(
-                            typeRef,
-                            typeRef.getType().getAnnotation(DocFilesTemplate.ANNOTATION).get());
-                    return children.map(
-                        childRef ->
-                            childRef
-                                .addVar("docFile:path", docFilesTemplate.path)
-                                .addVar("docFile:name", docFilesTemplate.getName(childRef)));
-                  }
-                  return children;
-                })
-            .map(out::cast);
+        return flatMapType(StepResolver::implementations);
       case TAG_REFS:
-        return Stream.of(in)
-            .flatMap(
-                typeRef ->
-                    typeRef
-                        .getDocTag(fromTag(step.params().get(0)))
-                        .flatMap(REF_SPLITTER::splitToStream)
-                        .map(docs::findTypeRef))
-            .map(out::cast);
+        String refsTag = fromTag(step.params().get(0));
+        return flatMapType(
+            (docs, in) ->
+                in.getDocTag(refsTag)
+                    .flatMap(REF_SPLITTER::splitToStream)
+                    .map(docs::findTypeRef));
       case METHODS:
-        return Stream.of(in).flatMap(DocRef::getMethods).map(out::cast);
+        return flatMapType((docs, in) -> in.getMethods());
       case JSON_PROPERTIES:
         boolean skipDocIgnore = step.params().contains("skipDocIgnore");
-        return Stream.of(in)
-            .flatMap(DocRef::getMethods)
-            .filter(
-                typeRef ->
-                    typeRef
-                        .getMethod()
-                        .filter(
-                            methodDocs ->
-                                Objects.nonNull(methodDocs.doc)
-                                    && typeRef.hasAnnotation(JSON_PROPERTY)
-                                    && !typeRef.hasAnnotation(JSON_IGNORE)
-                                    && (skipDocIgnore || !methodDocs.hasAnnotation(DOC_IGNORE)))
-                        .isPresent())
-            .flatMap(
-                typeRef -> {
-                  if (typeRef.getMethod().get().hasAnnotation(JSON_ALIAS)) {
-                    Stream<String> aliases =
-                        OPERANDS_SPLITTER.splitToStream(
-                            typeRef
-                                .getMethod()
-                                .get()
-                                .getAnnotation(JSON_ALIAS)
-                                .flatMap(annotationDocs -> annotationDocs.getAttribute("value"))
-                                .get()
-                                .replaceAll("\"", ""));
-                    String property =
-                        typeRef
-                            .getMethod()
-                            .get()
-                            .getAnnotation(JSON_PROPERTY)
-                            .flatMap(annotationDocs -> annotationDocs.getAttribute("value"))
-                            .get();
-                    Map<String, String> aliasDescription =
-                        Map.of(
-                            "en", String.format("*Deprecated* See `%s`.", property),
-                            "de", String.format("*Deprecated* Siehe `%s`.", property));
-                    return Stream.concat(
-                        Stream.of(typeRef),
-                        aliases.map(alias -> new DocRef(typeRef, alias, aliasDescription)));
-                  }
-                  return Stream.of(typeRef);
-                })
-            .map(out::cast);
+        return flatMapType((docs, in) -> jsonProperties(in, skipDocIgnore));
       case ANNOTATIONS:
-        return Stream.of(in)
-            .flatMap(DocRef::getAnnotations)
-            .map(ElementDocs::getName)
-            .map(out::cast);
+        return flatMapType((docs, in) -> in.getAnnotations().map(ElementDocs::getName));
       case MARKED:
-        return Stream.of(in)
-            .filter(
-                docRef -> docRef.hasAnnotation(DOC_MARKER, Map.of("value", step.params().get(0))))
-            .map(out::cast);
+        Map<String, String> marker = Map.of("value", step.params().get(0));
+        return flatMapType(
+            (docs, in) -> Stream.of(in).filter(docRef -> docRef.hasAnnotation(DOC_MARKER, marker)));
       case UNMARKED:
-        return Stream.of(in).filter(docRef -> !docRef.hasAnnotation(DOC_MARKER)).map(out::cast);
-      default:
-        throw new IllegalArgumentException();
-    }
-  }
-
-  private static <T> T mapType(
-      Docs docs, DocRef docRef, DocStep step, String language, Class<T> out) {
-    switch (step.type) {
+        return flatMapType(
+            (docs, in) -> Stream.of(in).filter(docRef -> !docRef.hasAnnotation(DOC_MARKER)));
+      case SORTED:
+        String sortTag = fromTag(step.params().get(0));
+        Comparator<DocRef> comparator =
+            Comparator.comparing(
+                docRef -> docRef.getDocTag(sortTag).findFirst().orElse(null),
+                Comparator.nullsLast(Comparator.naturalOrder()));
+        return (docs, in, language) -> in.map(DocRef.class::cast).sorted(comparator);
       case TAG:
-        TagReplacer tagReplacer = new TagReplacer(docRef, language, Map.of());
-        return out.cast(tagReplacer.replaceStrings(step.params().get(0)));
+        TagReplacer.Template template = TagReplacer.parse(step.params().get(0));
+        return mapType(
+            (docs, in, language) ->
+                new TagReplacer(in, language, Map.of()).replaceStrings(template));
       case CONSTANT:
-        return out.cast(step.params().get(0));
+        String constant = step.params().get(0);
+        return mapType((docs, in, language) -> constant);
       case JSON_NAME:
-        if (docRef.isMethod()) {
-          if (docRef.hasAlias()) {
-            return out.cast(docRef.getAlias());
-          }
-          return out.cast(
-              docRef
-                  .getMethod()
-                  .get()
-                  .getAnnotation(JSON_PROPERTY)
-                  .flatMap(annotationDocs -> annotationDocs.getAttribute("value"))
-                  .orElse(""));
-        }
+        return mapType((docs, in, language) -> jsonName(in));
       case JSON_TYPE:
-        if (docRef.isMethod()) {
-          return out.cast(getJsonType(docRef.getMethod().get().returnType, docs));
-        }
-      default:
-        throw new IllegalArgumentException();
-    }
-  }
-
-  private static Stream<DocRef> transformTypes(Stream<DocRef> in, DocStep step, String language) {
-    switch (step.type) {
-      case SORTED:
-        return in.sorted(
-            Comparator.comparing(
-                docRef -> docRef.getDocTag(fromTag(step.params().get(0))).findFirst().orElse(null),
-                Comparator.nullsLast(Comparator.naturalOrder())));
-      default:
-        throw new IllegalArgumentException();
-    }
-  }
-
-  private static <T> T mapString(String in, DocStep step, String language, Class<T> out) {
-    switch (step.type) {
+        return mapType((docs, in, language) -> jsonType(docs, in));
       case FILTER:
+        Set<String> allowed = new HashSet<>();
         for (String param : step.params()) {
           List<String> op_par = PARAM_SPLITTER.splitToList(param);
           if (Objects.equals(op_par.get(0), "ISIN")) {
-            boolean matches =
-                OPERANDS_SPLITTER
-                    .splitToStream(op_par.get(1))
-                    .anyMatch(operand -> Objects.equals(in, operand));
-            if (matches) {
-              return out.cast(in);
-            }
+            allowed.addAll(OPERANDS_SPLITTER.splitToList(op_par.get(1)));
           }
         }
-        return out.cast("");
+        return mapString(in -> allowed.contains(in) ? in : "");
       case FORMAT:
-        if (in.isBlank()) {
-          return out.cast(in);
-        }
-        return out.cast(String.format(step.params().get(0), in));
-      default:
-        throw new IllegalArgumentException();
-    }
-  }
-
-  private static Stream<String> collectString(Stream<String> in, DocStep step, String language) {
-    switch (step.type) {
+        String format = step.params().get(0);
+        return mapString(in -> in.isBlank() ? in : String.format(format, in));
       case COLLECT:
-        Stream<String> result = in.filter(s -> !s.isBlank());
-        if (step.params().contains("DISTINCT")) {
-          result = result.distinct();
-        }
-        if (step.params().contains("SORTED")) {
-          result = result.sorted();
-        }
+        boolean distinct = step.params().contains("DISTINCT");
+        boolean sorted = step.params().contains("SORTED");
         String separator =
             step.params().stream()
                 .filter(p -> p.startsWith("SEPARATED:"))
                 .map(p -> p.replace("SEPARATED:", ""))
                 .findFirst()
                 .orElse("");
-        return Stream.of(result.collect(Collectors.joining(separator)));
+        return (docs, in, language) -> {
+          Stream<String> result = in.map(String.class::cast).filter(s -> !s.isBlank());
+          if (distinct) {
+            result = result.distinct();
+          }
+          if (sorted) {
+            result = result.sorted();
+          }
+          return Stream.of(result.collect(Collectors.joining(separator)));
+        };
       default:
         throw new IllegalArgumentException();
     }
   }
 
-  static String getJsonType(String type, Docs docs) {
-    if (type.startsWith("java.util.List")
-        || type.startsWith("java.util.Set")
-        || type.startsWith("java.util.Collection")
-        || type.startsWith("com.google.common.collect.ImmutableList")
-        || type.startsWith("com.google.common.collect.ImmutableSet")
-        || type.endsWith("[]")) {
-      return "array";
-    }
-    if (hasSimpleType(type, "string") || type.startsWith("io.dropwizard.util.DataSize")) {
-      return "string";
-    }
-    if (hasSimpleType(type, "boolean")) {
-      return "boolean";
-    }
-    if (hasSimpleType(type, "int", "integer", "long", "double", "float")) {
-      return "number";
-    }
-    if (hasSuperType(docs, type, "enum")) {
-      return "string";
-    }
-
-    return "object";
+  private static Stage flatMapType(BiFunction<Docs, DocRef, Stream<?>> mapper) {
+    return (docs, in, language) -> in.flatMap(typeRef -> mapper.apply(docs, (DocRef) typeRef));
   }
 
-  private static final List<String> STRING_TYPES =
-      List.of("java.net.URI", "java.util.Date", "java.time.ZoneId", "io.dropwizard.util.Duration");
+  private static Stage mapType(TypeMapper mapper) {
+    return (docs, in, language) ->
+        in.map(typeRef -> mapper.apply(docs, (DocRef) typeRef, language));
+  }
 
-  private static boolean isString(String[] matches) {
-    return matches.length == 1 && "string".equals(matches[0]);
+  private static Stage mapString(UnaryOperator<String> mapper) {
+    return (docs, in, language) -> in.map(string -> mapper.apply((String) string));
   }
 
-  private static boolean hasSimpleType(String type, String... matches) {
-    for (String match : matches) {
-      if (type.equalsIgnoreCase(match)
-          || type.equalsIgnoreCase(String.format("java.util.Optional<%s>", match))
-          || type.equalsIgnoreCase(String.format("java.util.Optional%s", match))
-          || type.equalsIgnoreCase(String.format("java.lang.%s", match))
-          || type.equalsIgnoreCase(String.format("java.util.Optional<java.lang.%s>", match))) {
-        return true;
-      }
-    }
-    if (isString(matches)) {
-      for (String match : STRING_TYPES) {
-        if (type.equalsIgnoreCase(match)
-            || type.equalsIgnoreCase(String.format("java.util.Optional<%s>", match))) {
-          return true;
-        }
-      }
+  private static Stream<DocRef> implementations(Docs docs, DocRef typeRef) {
+    List<DocRef> byInterface = docs.findTypeByInterface(typeRef.getType().qualifiedName);
+
+    Stream<DocRef> children =
+        (byInterface.isEmpty()
+                ? docs.findTypeBySuperClass(typeRef.getType().qualifiedName).stream()
+                : byInterface.stream())
+            .filter(DocRef::hasDocs);
+
+    if (typeRef.hasAnnotation(DocFilesTemplate.ANNOTATION)) {
+      DocFilesTemplate docFilesTemplate =
+          DocFilesTemplate.from(
+              typeRef, typeRef.getType().getAnnotation(DocFilesTemplate.ANNOTATION).get());
+      return children.map(
+          childRef ->
+              childRef
+                  .addVar("docFile:path", docFilesTemplate.path)
+                  .addVar("docFile:name", docFilesTemplate.getName(childRef)));
     }
+    return children;
+  }
 
-    return false;
+  private static Stream<DocRef> jsonProperties(DocRef in, boolean skipDocIgnore) {
+    return in.getMethods()
+        .filter(
+            typeRef ->
+                typeRef
+                    .getMethod()
+                    .filter(
+                        methodDocs ->
+                            Objects.nonNull(methodDocs.doc)
+                                && typeRef.hasAnnotation(JSON_PROPERTY)
+                                && !typeRef.hasAnnotation(JSON_IGNORE)
+                                && (skipDocIgnore || !methodDocs.hasAnnotation(DOC_IGNORE)))
+                    .isPresent())
+        .flatMap(
+            typeRef -> {
+              if (typeRef.getMethod().get().hasAnnotation(JSON_ALIAS)) {
+                Stream<String> aliases =
+                    OPERANDS_SPLITTER.splitToStream(
+                        typeRef
+                            .getMethod()
+                            .get()
+                            .getAnnotation(JSON_ALIAS)
+                            .flatMap(annotationDocs -> annotationDocs.getAttribute("value"))
+                            .get()
+                            .replaceAll("\"", ""));
+                String property =
+                    typeRef
+                        .getMethod()
+                        .get()
+                        .getAnnotation(JSON_PROPERTY)
+                        .flatMap(annotationDocs -> annotationDocs.getAttribute("value"))
+                        .get();
+                Map<String, String> aliasDescription =
+                    Map.of(
+                        "en", String.format("*Deprecated* See `%s`.", property),
+                        "de", String.format("*Deprecated* Siehe `%s`.", property));
+                return Stream.concat(
+                    Stream.of(typeRef),
+                    aliases.map(alias -> new DocRef(typeRef, alias, aliasDescription)));
+              }
+              return Stream.of(typeRef);
+            });
   }
 
-  private static boolean hasSuperType(Docs docs, String type, String... matches) {
-    try {
-      TypeDocs typeDocs =
-          type.startsWith("java.util.Optional")
-              ? docs.findType(type.substring(19, type.length() - 1))
-              : docs.findType(type);
-      if (Objects.nonNull(typeDocs) && Objects.nonNull(typeDocs.superClass)) {
-        String superType = typeDocs.superClass.qualifiedName;
+  private static String jsonName(DocRef docRef) {
+    if (!docRef.isMethod()) {
+      throw new IllegalArgumentException();
+    }
+    if (docRef.hasAlias()) {
+      return docRef.getAlias();
+    }
+    return docRef
+        .getMethod()
+        .get()
+        .getAnnotation(JSON_PROPERTY)
+        .flatMap(annotationDocs -> annotationDocs.getAttribute("value"))
+        .orElse("");
+  }
 
-        return hasSimpleType(superType, matches);
-      }
-    } catch (Throwable e) {
-      // ignore
+  private static String jsonType(Docs docs, DocRef docRef) {
+    if (!docRef.isMethod()) {
+      throw new IllegalArgumentException();
     }
-    return false;
+    return getJsonType(docRef.getMethod().get().returnType, docs);
+  }
+
+  static String getJsonType(String type, Docs docs) {
+    return docs.getJavaType(type).getJsonType(docs);
   }
 
   private static String fromTag(String name) {
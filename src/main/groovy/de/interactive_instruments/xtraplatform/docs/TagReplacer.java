@@ -1,19 +1,15 @@
 package de.interactive_instruments.xtraplatform.docs;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class TagReplacer {
 
-  private static final Pattern PREFIX_AND_IF_EMPTY_PATTERN =
-      Pattern.compile(
-          "\\{@(?<tag>[\\w.:]+?)(\\s+(?<prefix>.*?)(\\|\\|\\|(?<ifempty>.*?))?)?}", Pattern.DOTALL);
-
   private final DocRef docRef;
   private final String language;
   private final String languageSuffix;
@@ -29,45 +25,212 @@ public class TagReplacer {
     this.vars = vars;
   }
 
+  /**
+   * A text parsed once into tags and the literal text between them. A tag is written as {@code
+   * {@tag}} or {@code {@tag prefix|||ifempty}}, where prefix is prepended to the tag value and
+   * ifempty replaces the whole tag if there is no value. Without ifempty, tags without value are
+   * kept as they are.
+   */
+  static class Template {
+    private final String text;
+    private final List<Tag> tags;
+
+    private Template(String text, List<Tag> tags) {
+      this.text = text;
+      this.tags = tags;
+    }
+
+    boolean hasTags() {
+      return !tags.isEmpty();
+    }
+  }
+
+  /**
+   * A template parsed once into the parts around its {@code {@body}} tags. The doc body is parsed
+   * on its own and inserted between the parts when rendering, so neither is parsed again for other
+   * combinations of template, body and language.
+   */
+  static class BodyTemplate {
+    private final List<Template> parts;
+
+    private BodyTemplate(List<Template> parts) {
+      this.parts = parts;
+    }
+  }
+
+  private static class Tag {
+    private final String name;
+    private final String prefix;
+    private final String ifEmpty;
+    private final int start;
+    private final int end;
+
+    private Tag(String name, String prefix, String ifEmpty, int start, int end) {
+      this.name = name;
+      this.prefix = prefix;
+      this.ifEmpty = ifEmpty;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  static Template parse(String text) {
+    List<Tag> tags = new ArrayList<>();
+    int length = text.length();
+    int from = 0;
+
+    while (true) {
+      int start = text.indexOf("{@", from);
+      if (start < 0) {
+        break;
+      }
+      int nameEnd = start + 2;
+      while (nameEnd < length && isNameChar(text.charAt(nameEnd))) {
+        nameEnd++;
+      }
+      if (nameEnd == start + 2 || nameEnd == length) {
+        from = start + 1;
+        continue;
+      }
+      String name = text.substring(start + 2, nameEnd);
+
+      if (text.charAt(nameEnd) == '}') {
+        tags.add(new Tag(name, "", null, start, nameEnd + 1));
+        from = nameEnd + 1;
+        continue;
+      }
+      if (!isSpace(text.charAt(nameEnd))) {
+        from = start + 1;
+        continue;
+      }
+
+      int prefixStart = nameEnd;
+      while (prefixStart < length && isSpace(text.charAt(prefixStart))) {
+        prefixStart++;
+      }
+      int close = text.indexOf('}', prefixStart);
+      if (close < 0) {
+        // no closing brace left, so no tag can follow
+        break;
+      }
+      int ifEmpty = text.indexOf("|||", prefixStart);
+
+      if (ifEmpty >= 0 && ifEmpty < close) {
+        tags.add(
+            new Tag(
+                name,
+                text.substring(prefixStart, ifEmpty),
+                text.substring(ifEmpty + 3, close),
+                start,
+                close + 1));
+      } else {
+        tags.add(new Tag(name, text.substring(prefixStart, close), null, start, close + 1));
+      }
+      from = close + 1;
+    }
+
+    return new Template(text, List.copyOf(tags));
+  }
+
+  static BodyTemplate parseWithBody(String text) {
+    String body = DocRef.asTag(DocRef.BODY);
+    List<Template> parts = new ArrayList<>();
+    int from = 0;
+
+    while (true) {
+      int start = text.indexOf(body, from);
+      if (start < 0) {
+        break;
+      }
+      parts.add(parse(text.substring(from, start)));
+      from = start + body.length();
+    }
+    parts.add(parse(text.substring(from)));
+
+    return new BodyTemplate(List.copyOf(parts));
+  }
+
+  // same as [\w.:] and \s in java.util.regex
+  private static boolean isNameChar(char c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || (c >= '0' && c <= '9')
+        || c == '_'
+        || c == '.'
+        || c == ':';
+  }
+
+  private static boolean isSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
   String replaceStrings(String text) {
-    String replaced = replace(text, PREFIX_AND_IF_EMPTY_PATTERN, this::prefixAndIfEmptyReplacer);
+    return replaceStrings(parse(text));
+  }
 
-    // run a second time but NOT recursive, unresolvable tags would cause endless loop
-    if (PREFIX_AND_IF_EMPTY_PATTERN.matcher(replaced).find()) {
-      return replace(replaced, PREFIX_AND_IF_EMPTY_PATTERN, this::prefixAndIfEmptyReplacer);
+  String replaceStrings(Template template) {
+    if (!template.hasTags()) {
+      return template.text;
     }
+    StringBuilder output = new StringBuilder(template.text.length());
+    render(template, output);
 
-    return replaced;
+    return renderAgain(output.toString());
   }
 
-  static String replace(String text, Pattern pattern, Function<Matcher, String> replacer) {
-    int lastIndex = 0;
+  String replaceStrings(BodyTemplate template, Template body) {
+    List<Template> parts = template.parts;
+    if (!body.hasTags() && parts.stream().noneMatch(Template::hasTags)) {
+      return parts.stream().map(part -> part.text).collect(Collectors.joining(body.text));
+    }
     StringBuilder output = new StringBuilder();
-    Matcher matcher = pattern.matcher(text);
-    while (matcher.find()) {
-      output.append(text, lastIndex, matcher.start()).append(replacer.apply(matcher));
-
-      lastIndex = matcher.end();
+    for (int i = 0; i < parts.size(); i++) {
+      if (i > 0) {
+        render(body, output);
+      }
+      render(parts.get(i), output);
     }
-    if (lastIndex < text.length()) {
-      output.append(text, lastIndex, text.length());
+
+    return renderAgain(output.toString());
+  }
+
+  // run a second time but NOT recursive, unresolvable tags would cause endless loop
+  private String renderAgain(String replaced) {
+    Template second = parse(replaced);
+    if (second.hasTags()) {
+      StringBuilder output = new StringBuilder(replaced.length());
+      render(second, output);
+      return output.toString();
     }
 
-    return output.toString();
+    return replaced;
   }
 
-  private String prefixAndIfEmptyReplacer(Matcher matcher) {
-    String tag = matcher.group("tag");
-    String prefix = Optional.ofNullable(matcher.group("prefix")).orElse("");
-    String ifempty = Optional.ofNullable(matcher.group("ifempty")).orElse(matcher.group());
+  private void render(Template template, StringBuilder output) {
+    String text = template.text;
+    int lastIndex = 0;
+
+    for (Tag tag : template.tags) {
+      output.append(text, lastIndex, tag.start);
+      Optional<String> value = findValue(tag.name);
+      if (value.isPresent()) {
+        output.append(tag.prefix).append(value.get());
+      } else if (Objects.nonNull(tag.ifEmpty)) {
+        output.append(tag.ifEmpty);
+      } else {
+        output.append(text, tag.start, tag.end);
+      }
+      lastIndex = tag.end;
+    }
+    output.append(text, lastIndex, text.length());
+  }
 
+  private Optional<String> findValue(String tag) {
     return Optional.ofNullable(docRef.getVars().get(tag + languageSuffix))
         .or(() -> Optional.ofNullable(docRef.getVars().get(tag)))
         .or(() -> Optional.ofNullable(vars.get(tag + languageSuffix)))
         .or(() -> Optional.ofNullable(vars.get(tag)))
-        .or(() -> findTag(tag))
-        .map(text -> prefix + text)
-        .orElse(ifempty);
+        .or(() -> findTag(tag));
   }
 
   private Optional<String> findTag(String tag) {
@@ -1,8 +1,11 @@
 package de.interactive_instruments.xtraplatform.docs;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 class TypeDocs extends ElementDocs {
 
@@ -10,6 +13,26 @@ class TypeDocs extends ElementDocs {
   List<ElementDocs> interfaces;
   List<MethodDocs> methods;
   List<VariableDocs> fields;
+  private transient volatile Map<String, MethodDocs> methodsBySignature;
+  private transient Consumer<TypeDocs> body;
+
+  // doc, methods and fields are filled in on first access, see BinaryLayerDocs and JsonLayerDocs
+  void loadLazily(Consumer<TypeDocs> body) {
+    this.body = body;
+  }
+
+  @Override
+  synchronized void load() {
+    if (Objects.nonNull(body)) {
+      body.accept(this);
+      this.body = null;
+    }
+  }
+
+  List<MethodDocs> getMethods() {
+    load();
+    return methods;
+  }
 
   boolean hasInterface(String qualifiedName) {
     return Objects.nonNull(interfaces)
@@ -26,31 +49,18 @@ class TypeDocs extends ElementDocs {
   }
 
   Optional<MethodDocs> findOverride(MethodDocs child) {
-    if (Objects.isNull(methods)) {
+    if (Objects.isNull(getMethods())) {
       return Optional.empty();
     }
-    return methods.stream()
-        // TODO: methodDocs.getSignature
-        .filter(methodDocs -> methodEquals(methodDocs, child))
-        .findFirst();
+    return Optional.ofNullable(getMethodsBySignature().get(child.getSignature()));
   }
 
-  private static boolean methodEquals(MethodDocs e1, MethodDocs e2) {
-    List<VariableDocs> parameters1 = Objects.requireNonNullElse(e1.parameters, List.of());
-    List<VariableDocs> parameters2 = Objects.requireNonNullElse(e2.parameters, List.of());
-
-    if (!Objects.equals(e1.qualifiedName, e2.qualifiedName)
-        || parameters1.size() != parameters2.size()) {
-      return false;
+  private Map<String, MethodDocs> getMethodsBySignature() {
+    if (Objects.isNull(methodsBySignature)) {
+      Map<String, MethodDocs> index = new HashMap<>();
+      methods.forEach(methodDocs -> index.putIfAbsent(methodDocs.getSignature(), methodDocs));
+      this.methodsBySignature = index;
     }
-
-    for (int i = 0; i < parameters1.size(); i++) {
-      if (!Objects.equals(parameters1.get(i).qualifiedName, parameters2.get(i).qualifiedName)
-          || !Objects.equals(parameters1.get(i).type, parameters2.get(i).type)) {
-        return false;
-      }
-    }
-
-    return true;
+    return methodsBySignature;
   }
 }
@@ -3,14 +3,15 @@ package de.interactive_instruments.xtraplatform.docs;
 import com.sun.source.doctree.DocCommentTree;
 import com.sun.source.util.DocTrees;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
@@ -27,18 +28,41 @@ import javax.lang.model.util.Types;
 class TypeScanner extends ElementScanner9<List<ElementDocs>, Integer> {
 
   private final DocTrees treeUtils;
-  private final Elements elementUtils;
   private final Types typeUtils;
+  private final DocCommentScanner.References references;
+  private final Map<Element, List<TypeMirror>> allInterfaces;
+  private final Map<TypeElement, Set<TypeElement>> superInterfaces;
+  private final Map<TypeElement, Set<String>> signatures;
+  private final Map<Element, Map<String, List<String>>> overrides;
 
   TypeScanner(DocTrees treeUtils, Elements elementUtils, Types typeUtils) {
+    this(treeUtils, elementUtils, typeUtils, false);
+  }
+
+  /**
+   * With {@code partial}, the scanned types are only a part of the module, see {@link
+   * DocCommentScanner.References}.
+   */
+  TypeScanner(DocTrees treeUtils, Elements elementUtils, Types typeUtils, boolean partial) {
     super(new ArrayList<>());
     this.treeUtils = treeUtils;
-    this.elementUtils = elementUtils;
     this.typeUtils = typeUtils;
+    this.references = new DocCommentScanner.References(elementUtils, treeUtils, partial);
+    this.allInterfaces = new HashMap<>();
+    this.superInterfaces = new HashMap<>();
+    this.signatures = new HashMap<>();
+    this.overrides = new HashMap<>();
   }
 
   List<ElementDocs> show(Set<? extends Element> elements) {
-    return scan(elements, 0);
+    List<ElementDocs> types = scan(elements, 0);
+    references.resolve(types);
+
+    return types;
+  }
+
+  List<String> getUnresolvedReferences() {
+    return references.getUnresolved();
   }
 
   @Override
@@ -78,22 +102,37 @@ class TypeScanner extends ElementScanner9<List<ElementDocs>, Integer> {
     return DEFAULT_VALUE;
   }
 
+  // cached per doclet run and deduplicated, shared super interfaces are only expanded once
   private List<TypeMirror> getAllInterfaces(Element e) {
     if (!(e instanceof TypeElement)) {
       return List.of();
     }
-    return Stream.concat(
-            Objects.nonNull(((TypeElement) e).getSuperclass())
-                ? getAllInterfaces(typeUtils.asElement(((TypeElement) e).getSuperclass())).stream()
-                : Stream.empty(),
-            ((TypeElement) e)
-                .getInterfaces().stream()
-                    .flatMap(
-                        typeMirror ->
-                            Stream.concat(
-                                Stream.of(typeMirror),
-                                getAllInterfaces(typeUtils.asElement(typeMirror)).stream())))
-        .collect(Collectors.toList());
+    List<TypeMirror> cached = allInterfaces.get(e);
+    if (Objects.nonNull(cached)) {
+      return cached;
+    }
+
+    TypeElement type = (TypeElement) e;
+    Map<Element, TypeMirror> interfaces = new LinkedHashMap<>();
+
+    if (Objects.nonNull(type.getSuperclass())) {
+      addInterfaces(interfaces, getAllInterfaces(typeUtils.asElement(type.getSuperclass())));
+    }
+    for (TypeMirror typeMirror : type.getInterfaces()) {
+      addInterfaces(interfaces, List.of(typeMirror));
+      addInterfaces(interfaces, getAllInterfaces(typeUtils.asElement(typeMirror)));
+    }
+
+    List<TypeMirror> all = List.copyOf(interfaces.values());
+    allInterfaces.put(type, all);
+
+    return all;
+  }
+
+  private void addInterfaces(Map<Element, TypeMirror> interfaces, List<TypeMirror> typeMirrors) {
+    for (TypeMirror typeMirror : typeMirrors) {
+      interfaces.putIfAbsent(typeUtils.asElement(typeMirror), typeMirror);
+    }
   }
 
   private boolean shouldInclude(TypeDocs typeDocs) {
@@ -124,11 +163,7 @@ class TypeScanner extends ElementScanner9<List<ElementDocs>, Integer> {
       m.annotations = scanAnnotations(e);
       m.doc = scanDocComment(e, typeDocs.qualifiedName + "::" + m.qualifiedName);
 
-      List<String> parentDocs =
-          findParentDocs(
-              e,
-              ((TypeElement) e.getEnclosingElement()).getInterfaces(),
-              Optional.ofNullable(((TypeElement) e.getEnclosingElement()).getSuperclass()));
+      List<String> parentDocs = findParentDocs(e);
       m.doc.add(Map.of("_overrides_", parentDocs));
 
       // TODO: exceptions, returnType
@@ -145,55 +180,74 @@ class TypeScanner extends ElementScanner9<List<ElementDocs>, Integer> {
     return DEFAULT_VALUE;
   }
 
-  private List<String> findParentDocs(
-      ExecutableElement e, List<? extends TypeMirror> interfaces, Optional<TypeMirror> superclass) {
-    List<String> p = new ArrayList<>();
-    for (TypeMirror typeMirror : interfaces) {
-      p.addAll(
-          findParentDocs(
-              e,
-              ((TypeElement) typeUtils.asElement(typeMirror)).getInterfaces(),
-              Optional.empty()));
-    }
-    for (TypeMirror typeMirror : interfaces) {
-      p.addAll(findParentDocs(e, (TypeElement) typeUtils.asElement(typeMirror)));
-    }
-    superclass
-        .flatMap(typeMirror -> Optional.ofNullable((TypeElement) typeUtils.asElement(typeMirror)))
-        .ifPresent(
-            superType -> {
-              p.addAll(findParentDocs(e, superType));
-            });
-    return p.stream().filter(qn -> qn.startsWith("de.ii.")).collect(Collectors.toList());
+  // the types that declare a method with the same signature, see getOverrides
+  private List<String> findParentDocs(ExecutableElement e) {
+    return overrides
+        .computeIfAbsent(e.getEnclosingElement(), type -> getOverrides((TypeElement) type))
+        .getOrDefault(getSignature(e), List.of());
   }
 
-  private List<String> findParentDocs(ExecutableElement e, TypeElement parent) {
-    List<String> p = new ArrayList<>();
-    for (Element element : parent.getEnclosedElements()) {
-      if (element instanceof ExecutableElement && methodEquals(e, (ExecutableElement) element)) {
-        p.add(parent.getQualifiedName().toString());
+  /**
+   * Maps the signatures of all methods declared in the super interfaces and the direct superclass
+   * of the given type to the declaring types, in the order of {@link #getSuperInterfaces}.
+   */
+  private Map<String, List<String>> getOverrides(TypeElement type) {
+    List<TypeElement> parents = new ArrayList<>(getSuperInterfaces(type));
+    Optional.ofNullable(type.getSuperclass())
+        .map(typeMirror -> (TypeElement) typeUtils.asElement(typeMirror))
+        .ifPresent(parents::add);
+
+    Map<String, List<String>> overrides = new HashMap<>();
+    for (TypeElement parent : parents) {
+      String qualifiedName = parent.getQualifiedName().toString();
+      if (qualifiedName.startsWith("de.ii.")) {
+        for (String signature : getSignatures(parent)) {
+          overrides.computeIfAbsent(signature, s -> new ArrayList<>()).add(qualifiedName);
+        }
       }
     }
-    return p;
+
+    return overrides;
   }
 
-  private static boolean methodEquals(ExecutableElement e1, ExecutableElement e2) {
-    if (!Objects.equals(e1.getSimpleName(), e2.getSimpleName())
-        || e1.getParameters().size() != e2.getParameters().size()) {
-      return false;
+  // the super interfaces of the super interfaces, followed by the direct super interfaces
+  private Set<TypeElement> getSuperInterfaces(TypeElement type) {
+    Set<TypeElement> cached = superInterfaces.get(type);
+    if (Objects.nonNull(cached)) {
+      return cached;
     }
-    for (int i = 0; i < e1.getParameters().size(); i++) {
-      if (!Objects.equals(
-              e1.getParameters().get(i).getSimpleName().toString(),
-              e2.getParameters().get(i).getSimpleName().toString())
-          || !Objects.equals(
-              e1.getParameters().get(i).asType().toString(),
-              e2.getParameters().get(i).asType().toString())) {
-        return false;
-      }
+
+    Set<TypeElement> interfaces = new LinkedHashSet<>();
+    List<TypeElement> direct =
+        type.getInterfaces().stream()
+            .map(typeMirror -> (TypeElement) typeUtils.asElement(typeMirror))
+            .collect(Collectors.toList());
+
+    for (TypeElement typeElement : direct) {
+      interfaces.addAll(getSuperInterfaces(typeElement));
     }
+    interfaces.addAll(direct);
+    superInterfaces.put(type, interfaces);
 
-    return true;
+    return interfaces;
+  }
+
+  private Set<String> getSignatures(TypeElement type) {
+    return signatures.computeIfAbsent(
+        type,
+        t ->
+            t.getEnclosedElements().stream()
+                .filter(element -> element instanceof ExecutableElement)
+                .map(element -> getSignature((ExecutableElement) element))
+                .collect(Collectors.toSet()));
+  }
+
+  // name, parameter names and parameter types
+  private static String getSignature(ExecutableElement e) {
+    return e.getSimpleName()
+        + e.getParameters().stream()
+            .map(parameter -> parameter.getSimpleName() + " " + parameter.asType())
+            .collect(Collectors.joining(",", "(", ")"));
   }
 
   private TypeDocs getCurrentTypeDocs() {
@@ -262,8 +316,7 @@ class TypeScanner extends ElementScanner9<List<ElementDocs>, Integer> {
     DocCommentTree docCommentTree = treeUtils.getDocCommentTree(e);
 
     if (docCommentTree != null) {
-      new DocCommentScanner(elementUtils, enclosingElement, DEFAULT_VALUE, tags)
-          .visit(docCommentTree, null);
+      new DocCommentScanner(references, enclosingElement, tags).visit(docCommentTree, null);
     }
 
     return tags;
@@ -2,18 +2,33 @@ package de.interactive_instruments.xtraplatform.docs;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.AbstractMap;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.lang.model.SourceVersion;
+import javax.tools.DocumentationTool;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
 import jdk.javadoc.doclet.Doclet;
 import jdk.javadoc.doclet.DocletEnvironment;
 import jdk.javadoc.doclet.Reporter;
@@ -95,6 +110,85 @@ public class XtraPlatformDoclet implements Doclet {
     return true;
   }
 
+  /**
+   * Runs the doclet in the current JVM via the {@link DocumentationTool} API, with the same
+   * options as the moduleDocs javadoc task. Used by {@link ModuleDocsWork}, so that the modules
+   * of a layer do not need a javadoc process each. The release is passed as {@code --release} if
+   * present.
+   */
+  static void run(
+      Collection<File> sources,
+      Collection<File> classpath,
+      File targetDir,
+      String moduleInfo,
+      Integer release)
+      throws IOException {
+    DocumentationTool tool = ToolProvider.getSystemDocumentationTool();
+    if (Objects.isNull(tool)) {
+      throw new IllegalStateException("No documentation tool available, a JDK is required");
+    }
+
+    targetDir.mkdirs();
+
+    try (StandardJavaFileManager fileManager = tool.getStandardFileManager(null, null, null)) {
+      fileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+
+      List<String> options =
+          new ArrayList<>(
+              List.of("-public", "-quiet", "-d", targetDir.getPath(), "-modinfo", moduleInfo));
+      if (Objects.nonNull(release)) {
+        options.addAll(List.of("--release", release.toString()));
+      }
+      Boolean success =
+          tool.getTask(
+                  null,
+                  fileManager,
+                  null,
+                  XtraPlatformDoclet.class,
+                  options,
+                  fileManager.getJavaFileObjectsFromFiles(sources))
+              .call();
+
+      if (!Boolean.TRUE.equals(success)) {
+        throw new IllegalStateException("Generating module docs failed for " + targetDir);
+      }
+    }
+  }
+
+  /**
+   * Merges the type docs written by {@link ModuleDocsProcessor} during compilation into the same
+   * module docs as {@link #run(DocletEnvironment)}. Used by {@link ModuleDocsTask}, so that only
+   * the changed types have to be extracted again. The symbolic references left by the processor are
+   * resolved here, in the order of the qualified names, since only now all types of the module are
+   * known.
+   */
+  static void merge(File typesDir, File targetDir, String moduleInfo) throws IOException {
+    Gson gson = new GsonBuilder().create();
+    ModuleDocs moduleDocs = gson.fromJson(moduleInfo, ModuleDocs.class);
+    List<ElementDocs> types = new ArrayList<>();
+
+    File[] typeFiles = typesDir.listFiles((dir, name) -> name.endsWith(".json"));
+    if (Objects.nonNull(typeFiles)) {
+      Arrays.sort(typeFiles);
+      for (File typeFile : typeFiles) {
+        try (Reader reader = new BufferedReader(new FileReader(typeFile, StandardCharsets.UTF_8))) {
+          types.add(gson.fromJson(reader, TypeDocs.class));
+        }
+      }
+    }
+
+    DocCommentScanner.References.resolveModule(types);
+
+    moduleDocs.api = new HashMap<>();
+    for (ElementDocs type : types) {
+      moduleDocs.api.put(type.qualifiedName, (TypeDocs) type);
+    }
+
+    targetDir.mkdirs();
+
+    writeJson(new File(targetDir, MOD_DOCS_FILE_NAME), moduleDocs);
+  }
+
   static void writeJson(File f, Object o) throws IOException {
     if (f.exists()) {
       f.delete();
@@ -106,15 +200,12 @@ public class XtraPlatformDoclet implements Doclet {
       throw new IOException("Cannot write to " + f.getName());
     }
 
-    FileWriter fw = new FileWriter(f);
     Gson gson = new GsonBuilder()
         //.setPrettyPrinting()
         .create();
-    String json = gson.toJson(o);
-    fw.write(json);
-    fw.flush();
-    fw.close();
-    //System.out.println(json);
+    try (JsonWriter writer = gson.newJsonWriter(new BufferedWriter(new FileWriter(f)))) {
+      gson.toJson(o, o.getClass(), writer);
+    }
   }
 
   /**